@@ -7,7 +7,7 @@ cartApp.config(['$httpProvider', function($httpProvider) {
 cartApp.controller('cartController', function($scope, $http){
 	
 			$scope.refreshCart = function(cartId){
-				$http.get('/Spring01/rest/cart/'+$scope.cartId)
+				$http.get('/Spring01/rest/cart/'+$scope.cartId+'/compact')
 				.success(function(data){
 					$scope.cart = data;
 				});
@@ -15,18 +15,29 @@ cartApp.controller('cartController', function($scope, $http){
 			
 			$scope.clearCart = function() {
 				$http.delete('/Spring01/rest/cart/'+$scope.cartId)
-				 .success($scope.refreshCart($scope.cartId));
+				.success(function(data) {
+					if (!window.EventSource) {
+						$scope.refreshCart($scope.cartId);
+					}
+				});
 			};
 				  
 			$scope.initCartId = function(cartId) {
 				$scope.cartId=cartId;
 				$scope.refreshCart($scope.cartId);
+				if (window.EventSource) {
+					var events = new EventSource('/Spring01/push/events');
+					events.addEventListener('cart', function(event) {
+						$scope.$apply(function() {
+							$scope.cart = JSON.parse(event.data);
+						});
+					});
+				}
 			};
 			
 			$scope.addToCart = function(productId) {
 				 $http.put('/Spring01/rest/cart/add/'+productId)
 				 .success(function(data) {
-					$scope.refreshCart( $http.get ('/Spring01/rest/cart/cartId'));
 					alert("Product Successfully added to the Cart!");
 				});
 			 };
@@ -34,8 +45,40 @@ cartApp.controller('cartController', function($scope, $http){
 			 $scope.removeFromCart = function(productId) {
 				 $http.put('/Spring01/rest/cart/remove/'+productId)
 				 .success(function(data) {
-					 $scope.refreshCart( $http.get('/Spring01/rest/cart/cartId'));
+					 if (!window.EventSource) {
+						 $scope.refreshCart($scope.cartId);
+					 }
 				 });
 			};
 	
+	});
+
+cartApp.controller('stockController', function($scope){
+
+			$scope.watchStock = function(productId, unitsInStock) {
+				$scope.unitsInStock = unitsInStock;
+				if (window.EventSource) {
+					var events = new EventSource('/Spring01/push/events?products='+encodeURIComponent(productId));
+					events.addEventListener('stock', function(event) {
+						var stock = JSON.parse(event.data);
+						if (stock.productId == productId) {
+							$scope.$apply(function() {
+								$scope.unitsInStock = stock.unitsInStock;
+							});
+						}
+					});
+				}
+			};
+
+	});
+
+cartApp.controller('recommendationController', function($scope, $http){
+
+			$scope.loadRecommendations = function(productId) {
+				$http.get('/Spring01/recommendations/product?id='+encodeURIComponent(productId))
+				.success(function(data){
+					$scope.boughtTogether = data.boughtTogether;
+				});
+			};
+
 	});
\ No newline at end of file
@@ -1,4 +1,4 @@
-<%@ page language="java" contentType="text/html; charset=ISO-8859-1"
+<%@ page language="java" session="false" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core"%>
 <%@ taglib prefix="spring" uri="http://www.springframework.org/tags"%>
@@ -41,12 +41,12 @@
 					<th>Price</th>
 					<th>Action</th>
 				</tr>
-				<tr ng-repeat="item in cart.cartItems">
-					<td>{{item.product.productId}}-{{item.product.name}}</td>
+				<tr ng-repeat="item in cart.items">
+					<td>{{item.productId}}-{{item.name}}</td>
 					<td>{{item.quantity}}</td>
-					<td>{{item.product.unitPrice}}</td>
+					<td>{{item.unitPrice}}</td>
 					<td>{{item.totalPrice}}</td>
-					<td><a href="#" class="label label-danger" ng-click="removeFromCart(item.product.productId)"> <span
+					<td><a href="#" class="label label-danger" ng-click="removeFromCart(item.productId)"> <span
 							class="glyphicon glyphicon-remove" /></span> Remove
 					</a></td>
 				</tr>
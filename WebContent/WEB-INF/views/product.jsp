@@ -1,4 +1,4 @@
-<%@ page language="java" contentType="text/html; charset=ISO-8859-1"
+<%@ page language="java" session="false" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core"%>
 <%@ taglib prefix="spring" uri="http://www.springframework.org/tags"%>
@@ -42,8 +42,8 @@
 				<p>
 					<strong>category</strong> : ${product.category}
 				</p>
-				<p>
-					<strong>Availble units in stock </strong> : ${product.unitsInStock}
+				<p ng-controller="stockController" ng-init="watchStock('${product.productId}', ${product.unitsInStock})">
+					<strong>Availble units in stock </strong> : <span ng-bind="unitsInStock">${product.unitsInStock}</span>
 				</p>
 				<h4>${product.unitPrice}USD</h4>
 				<p ng-controller="cartController">
@@ -54,6 +54,15 @@
 						class="glyphicon-shopping-cart glyphicon"> </span> Order Now
 					</a>
 				</p>
+				<div ng-controller="recommendationController" ng-init="loadRecommendations('${product.productId}')">
+					<h4 ng-show="boughtTogether.length">Frequently bought together</h4>
+					<ul class="list-unstyled">
+						<li ng-repeat="recommended in boughtTogether">
+							<a ng-href="<spring:url value="/products/product" />?id={{recommended.productId}}">{{recommended.name}}</a>
+							- {{recommended.unitPrice}}USD
+						</li>
+					</ul>
+				</div>
 			</div>
 		</div>
 	</section>
@@ -1,6 +1,7 @@
-<%@ page language="java" contentType="text/html; charset=ISO-8859-1" pageEncoding="ISO-8859-1"%>
+<%@ page language="java" session="false" contentType="text/html; charset=ISO-8859-1" pageEncoding="ISO-8859-1"%>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 <%@ taglib prefix="spring" uri="http://www.springframework.org/tags" %>
+<%@ taglib prefix="webstore" uri="http://www.packt.com/webstore/tags" %>
 <!Doctype html>
 <html>
 <link rel="stylesheet" href="//netdna.bootstrapcdn.com/bootstrap/3.0.0/css/bootstrap.min.css">
@@ -26,6 +27,7 @@
 	<section class="container" ng-app="cartApp" >
 	<div class="row">
 	<c:forEach items="${products}" var="product" >
+	<webstore:productTile product="${product}">
 		<div class="col-sm-6 col-md-3" style="padding-bottom: 15px">
 			<div class="thumbnail">
 				<div class="caption">
@@ -35,17 +37,18 @@
 						</a>
 						<p>${product.description}</p>
 						<p>${product.unitPrice} USD</p>
-						<p>${product.unitsInStock} units in stock</p>
+						<p>${product.unitsInStock} <spring:message code="products.tile.unitsInStock" /></p>
 						<p ng-controller="cartController">
 					<a href="<spring:url value="/products/product?id=${product.productId }" />"  class="btn btn-primary" >
-					<span class="glyphicon-info-sign glyphicon"> </span>  Details</a>
+					<span class="glyphicon-info-sign glyphicon"> </span>  <spring:message code="products.tile.details" /></a>
 					<a href="#" class="btn btn-warning btn-large" ng-click="addToCart('${product.productId}')"> 
-				<span class="glyphicon-shopping-cart glyphicon"> </span> Order Now
+				<span class="glyphicon-shopping-cart glyphicon"> </span> <spring:message code="products.tile.orderNow" />
 					</a>
 					</p>
 				</div>
 			</div>
 		</div>
+	</webstore:productTile>
 		</c:forEach>
 	</div>
 	</section>
@@ -0,0 +1,216 @@
+package com.packt.webstore.analytics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * "Frequently bought together", maintained as products are put into carts.
+ * Each product keeps the decayed co-occurrence weight of at most
+ * {@code maxNeighbors} other products; the weakest pair is dropped to make
+ * room, and pairs that have decayed below {@code minWeight} are pruned
+ * periodically, so memory is bounded by catalog size times
+ * {@code maxNeighbors}. The top {@code k} neighbours of a product are
+ * republished after every update to it, so a lookup is a single map read.
+ * Weights use forward decay like {@link SpaceSavingTopK}: a pair seen
+ * {@code halfLifeHours} ago counts half.
+ */
+@Component
+public class CoPurchaseRecommender {
+
+	private static final double RESCALE_THRESHOLD = 1e100;
+
+	@Value("#{systemProperties['webstore.recommendations.halfLifeHours'] ?: 72}")
+	private long halfLifeHours;
+
+	@Value("#{systemProperties['webstore.recommendations.maxNeighbors'] ?: 50}")
+	private int maxNeighbors;
+
+	@Value("#{systemProperties['webstore.recommendations.k'] ?: 10}")
+	private int k;
+
+	@Value("#{systemProperties['webstore.recommendations.minWeight'] ?: 0.05}")
+	private double minWeight;
+
+	@Value("#{systemProperties['webstore.recommendations.maxBasket'] ?: 20}")
+	private int maxBasket;
+
+	@Value("#{systemProperties['webstore.recommendations.pruneEvery'] ?: 10000}")
+	private int pruneEvery;
+
+	private final Map<String, Map<String, double[]>> pairs = new HashMap<String, Map<String, double[]>>();
+	private final ConcurrentMap<String, List<String>> recommendations = new ConcurrentHashMap<String, List<String>>();
+	private double decayPerMilli;
+	private long landmark;
+	private long updates;
+	private long pairCount;
+	private long evictedPairs;
+	private long prunedPairs;
+
+	@PostConstruct
+	public void init() {
+		decayPerMilli = Math.log(2) / TimeUnit.HOURS.toMillis(halfLifeHours);
+		landmark = System.currentTimeMillis();
+	}
+
+	/**
+	 * Records that {@code productId} was put into a cart already holding
+	 * {@code otherProductIds}. Only the first {@code maxBasket} other products
+	 * are paired, which bounds the cost of one call.
+	 */
+	public void productAdded(String productId, Collection<String> otherProductIds) {
+		if (otherProductIds.isEmpty()) {
+			return;
+		}
+		record(productId, otherProductIds, System.currentTimeMillis());
+	}
+
+	/**
+	 * Up to {@code limit} product ids most often bought with the product,
+	 * strongest first. Never blocks.
+	 */
+	public List<String> getRecommendations(String productId, int limit) {
+		List<String> top = recommendations.get(productId);
+		if (top == null) {
+			return Collections.emptyList();
+		}
+		return top.size() <= limit ? top : top.subList(0, limit);
+	}
+
+	public synchronized Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("products", pairs.size());
+		metrics.put("pairs", pairCount);
+		metrics.put("maxNeighbors", maxNeighbors);
+		metrics.put("halfLifeHours", halfLifeHours);
+		metrics.put("updates", updates);
+		metrics.put("evictedPairs", evictedPairs);
+		metrics.put("prunedPairs", prunedPairs);
+		return metrics;
+	}
+
+	private synchronized void record(String productId, Collection<String> otherProductIds, long now) {
+		double weight = Math.exp(decayPerMilli * (now - landmark));
+		if (weight > RESCALE_THRESHOLD) {
+			rescale(now);
+			weight = 1.0;
+		}
+		int paired = 0;
+		for (String other : otherProductIds) {
+			if (other.equals(productId)) {
+				continue;
+			}
+			if (paired++ == maxBasket) {
+				break;
+			}
+			add(productId, other, weight);
+			add(other, productId, weight);
+			publish(other);
+		}
+		publish(productId);
+		if (++updates % pruneEvery == 0) {
+			prune(now);
+		}
+	}
+
+	private void add(String productId, String other, double weight) {
+		Map<String, double[]> neighbors = pairs.get(productId);
+		if (neighbors == null) {
+			neighbors = new HashMap<String, double[]>();
+			pairs.put(productId, neighbors);
+		}
+		double[] pair = neighbors.get(other);
+		if (pair != null) {
+			pair[0] += weight;
+			return;
+		}
+		if (neighbors.size() == maxNeighbors) {
+			String weakest = null;
+			double weakestWeight = Double.MAX_VALUE;
+			for (Map.Entry<String, double[]> entry : neighbors.entrySet()) {
+				if (entry.getValue()[0] < weakestWeight) {
+					weakest = entry.getKey();
+					weakestWeight = entry.getValue()[0];
+				}
+			}
+			neighbors.remove(weakest);
+			pairCount--;
+			evictedPairs++;
+		}
+		neighbors.put(other, new double[] { weight });
+		pairCount++;
+	}
+
+	private void publish(String productId) {
+		Map<String, double[]> neighbors = pairs.get(productId);
+		if (neighbors == null || neighbors.isEmpty()) {
+			recommendations.remove(productId);
+			return;
+		}
+		List<Map.Entry<String, double[]>> ranked = new ArrayList<Map.Entry<String, double[]>>(neighbors.entrySet());
+		Collections.sort(ranked, new Comparator<Map.Entry<String, double[]>>() {
+			@Override
+			public int compare(Map.Entry<String, double[]> a, Map.Entry<String, double[]> b) {
+				return Double.compare(b.getValue()[0], a.getValue()[0]);
+			}
+		});
+		List<String> top = new ArrayList<String>(Math.min(k, ranked.size()));
+		for (int i = 0; i < ranked.size() && i < k; i++) {
+			top.add(ranked.get(i).getKey());
+		}
+		recommendations.put(productId, Collections.unmodifiableList(top));
+	}
+
+	/**
+	 * Drops pairs whose weight, decayed to now, is below {@code minWeight}.
+	 */
+	private void prune(long now) {
+		double threshold = minWeight * Math.exp(decayPerMilli * (now - landmark));
+		Iterator<Map.Entry<String, Map<String, double[]>>> products = pairs.entrySet().iterator();
+		while (products.hasNext()) {
+			Map.Entry<String, Map<String, double[]>> product = products.next();
+			int before = product.getValue().size();
+			Iterator<double[]> weights = product.getValue().values().iterator();
+			while (weights.hasNext()) {
+				if (weights.next()[0] < threshold) {
+					weights.remove();
+				}
+			}
+			int removed = before - product.getValue().size();
+			if (removed > 0) {
+				pairCount -= removed;
+				prunedPairs += removed;
+				if (product.getValue().isEmpty()) {
+					products.remove();
+					recommendations.remove(product.getKey());
+				} else {
+					publish(product.getKey());
+				}
+			}
+		}
+	}
+
+	private void rescale(long now) {
+		double scale = Math.exp(-decayPerMilli * (now - landmark));
+		for (Map<String, double[]> neighbors : pairs.values()) {
+			for (double[] pair : neighbors.values()) {
+				pair[0] *= scale;
+			}
+		}
+		landmark = now;
+	}
+}
@@ -0,0 +1,132 @@
+package com.packt.webstore.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.packt.webstore.domain.ProductSales;
+import com.packt.webstore.domain.repository.ProductRepository;
+import com.packt.webstore.event.OrderEvent;
+import com.packt.webstore.event.OrderEventHandler;
+import com.packt.webstore.exception.ProductNotFoundException;
+
+/**
+ * Sales velocity and stock depletion maintained from the order event stream.
+ * Each event updates a few counters in O(1) (the bestseller heap in
+ * O(log k) for a fixed k); queries read those counters and never scan the
+ * catalog.
+ */
+@Component
+public class SalesAnalytics implements OrderEventHandler {
+
+	private static final String UNKNOWN_CATEGORY = "unknown";
+
+	@Value("#{systemProperties['webstore.analytics.windowMinutes'] ?: 60}")
+	private int windowMinutes;
+
+	@Value("#{systemProperties['webstore.analytics.trackedBestsellers'] ?: 100}")
+	private int trackedBestsellers;
+
+	@Autowired
+	@Qualifier("OutMemory")
+	private ProductRepository productRepository;
+
+	private SlidingWindowCounter productSales;
+	private SlidingWindowCounter categorySales;
+	private SpaceSavingTopK bestsellers;
+	private final Map<String, Long> stock = new HashMap<String, Long>();
+
+	@PostConstruct
+	public void init() {
+		long bucketMillis = TimeUnit.MINUTES.toMillis(1);
+		productSales = new SlidingWindowCounter(windowMinutes, bucketMillis);
+		categorySales = new SlidingWindowCounter(windowMinutes, bucketMillis);
+		bestsellers = new SpaceSavingTopK(trackedBestsellers, productSales.getWindowMillis(), System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized void onEvent(OrderEvent event, long sequence, boolean endOfBatch) {
+		long now = event.getTimestamp();
+		String productId = event.getProductId();
+		productSales.add(productId, event.getQuantity(), now);
+		categorySales.add(categoryOf(productId), event.getQuantity(), now);
+		bestsellers.add(productId, event.getQuantity(), now);
+		stock.put(productId, event.getUnitsInStock());
+	}
+
+	public synchronized ProductSales getProductSales(String productId) {
+		long now = System.currentTimeMillis();
+		ProductSales sales = new ProductSales();
+		sales.setProductId(productId);
+		sales.setCategory(categoryOf(productId));
+		sales.setUnitsSold(productSales.total(productId, now));
+		sales.setVelocityPerHour(sales.getUnitsSold() * (double) TimeUnit.HOURS.toMillis(1) / productSales.getWindowMillis());
+		Long unitsInStock = stock.get(productId);
+		sales.setUnitsInStock(unitsInStock != null ? unitsInStock : productRepository.getProductById(productId).getUnitsInStock());
+		if (sales.getVelocityPerHour() > 0) {
+			sales.setHoursToStockOut(sales.getUnitsInStock() / sales.getVelocityPerHour());
+		}
+		return sales;
+	}
+
+	public synchronized List<ProductSales> getBestsellers(int k) {
+		long now = System.currentTimeMillis();
+		List<ProductSales> top = new ArrayList<ProductSales>();
+		for (SpaceSavingTopK.Estimate estimate : bestsellers.top(k, now)) {
+			ProductSales sales = getProductSales(estimate.getProductId());
+			sales.setRecentUnits(estimate.getWeight());
+			top.add(sales);
+		}
+		return top;
+	}
+
+	public synchronized Map<String, Long> getCategorySales() {
+		return categorySales.totals(System.currentTimeMillis());
+	}
+
+	/**
+	 * Products sold within the window, soonest to run out first.
+	 */
+	public synchronized List<ProductSales> getStockOutForecast(int limit) {
+		List<ProductSales> forecast = new ArrayList<ProductSales>();
+		for (String productId : productSales.totals(System.currentTimeMillis()).keySet()) {
+			forecast.add(getProductSales(productId));
+		}
+		Collections.sort(forecast, new Comparator<ProductSales>() {
+			@Override
+			public int compare(ProductSales a, ProductSales b) {
+				return Double.compare(a.getHoursToStockOut(), b.getHoursToStockOut());
+			}
+		});
+		return forecast.subList(0, Math.min(limit, forecast.size()));
+	}
+
+	public int getWindowMinutes() {
+		return windowMinutes;
+	}
+
+	/**
+	 * Looked up on every call rather than cached: the catalog lookup is a
+	 * hash lookup, ids that are not in the catalog leave nothing behind,
+	 * and a product moved to another category counts there from then on.
+	 */
+	private String categoryOf(String productId) {
+		try {
+			String category = productRepository.getProductById(productId).getCategory();
+			return category == null ? UNKNOWN_CATEGORY : category;
+		} catch (ProductNotFoundException e) {
+			return UNKNOWN_CATEGORY;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.packt.webstore.analytics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per key totals over a sliding time window made of fixed buckets. A key's
+ * running total is kept up to date as buckets expire, so both adding and
+ * reading are O(1) amortized. Not thread safe.
+ */
+class SlidingWindowCounter {
+
+	private final int bucketCount;
+	private final long bucketMillis;
+	private final Map<String, Window> windows = new HashMap<String, Window>();
+
+	SlidingWindowCounter(int bucketCount, long bucketMillis) {
+		this.bucketCount = bucketCount;
+		this.bucketMillis = bucketMillis;
+	}
+
+	void add(String key, long amount, long now) {
+		Window window = windows.get(key);
+		if (window == null) {
+			window = new Window(bucketCount, now / bucketMillis);
+			windows.put(key, window);
+		}
+		window.add(amount, now / bucketMillis);
+	}
+
+	long total(String key, long now) {
+		Window window = windows.get(key);
+		if (window == null) {
+			return 0;
+		}
+		window.advance(now / bucketMillis);
+		return window.total;
+	}
+
+	Map<String, Long> totals(long now) {
+		Map<String, Long> totals = new HashMap<String, Long>();
+		for (Map.Entry<String, Window> entry : windows.entrySet()) {
+			entry.getValue().advance(now / bucketMillis);
+			if (entry.getValue().total > 0) {
+				totals.put(entry.getKey(), entry.getValue().total);
+			}
+		}
+		return totals;
+	}
+
+	long getWindowMillis() {
+		return bucketCount * bucketMillis;
+	}
+
+	private static class Window {
+		private final long[] buckets;
+		private long epoch;
+		private long total;
+
+		Window(int bucketCount, long epoch) {
+			this.buckets = new long[bucketCount];
+			this.epoch = epoch;
+		}
+
+		void add(long amount, long now) {
+			advance(now);
+			buckets[(int) (epoch % buckets.length)] += amount;
+			total += amount;
+		}
+
+		void advance(long now) {
+			long expired = Math.min(now - epoch, buckets.length);
+			for (long i = 1; i <= expired; i++) {
+				int index = (int) ((epoch + i) % buckets.length);
+				total -= buckets[index];
+				buckets[index] = 0;
+			}
+			if (now > epoch) {
+				epoch = now;
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.packt.webstore.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy hitters sketch with forward exponential decay. It
+ * tracks at most {@code capacity} keys in an indexed min-heap, so an update
+ * costs O(log capacity) whatever the number of distinct products. Recent
+ * sales weigh more; a sale {@code halfLifeMillis} old counts half.
+ * Not thread safe.
+ */
+class SpaceSavingTopK {
+
+	private static final double RESCALE_THRESHOLD = 1e100;
+
+	private final int capacity;
+	private final double decayPerMilli;
+	private final Entry[] heap;
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	private int size;
+	private long landmark;
+
+	SpaceSavingTopK(int capacity, long halfLifeMillis, long now) {
+		this.capacity = capacity;
+		this.decayPerMilli = Math.log(2) / halfLifeMillis;
+		this.heap = new Entry[capacity];
+		this.landmark = now;
+	}
+
+	void add(String key, long amount, long now) {
+		double weight = amount * Math.exp(decayPerMilli * (now - landmark));
+		if (weight > RESCALE_THRESHOLD) {
+			rescale(now);
+			weight = amount;
+		}
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			if (size < capacity) {
+				entry = new Entry(key, size);
+				heap[size++] = entry;
+			} else {
+				entry = heap[0];
+				entries.remove(entry.key);
+				entry.key = key;
+				entry.error = entry.count;
+			}
+			entries.put(key, entry);
+		}
+		entry.count += weight;
+		siftDown(entry.index);
+	}
+
+	/**
+	 * Returns up to {@code k} keys by decayed weight together with their
+	 * estimate and the maximum overestimation, both in decayed units.
+	 */
+	List<Estimate> top(int k, long now) {
+		double scale = Math.exp(-decayPerMilli * (now - landmark));
+		List<Estimate> estimates = new ArrayList<Estimate>(size);
+		for (int i = 0; i < size; i++) {
+			estimates.add(new Estimate(heap[i].key, heap[i].count * scale, heap[i].error * scale));
+		}
+		Collections.sort(estimates, new Comparator<Estimate>() {
+			@Override
+			public int compare(Estimate a, Estimate b) {
+				return Double.compare(b.getWeight(), a.getWeight());
+			}
+		});
+		return estimates.subList(0, Math.min(k, estimates.size()));
+	}
+
+	private void rescale(long now) {
+		double scale = Math.exp(-decayPerMilli * (now - landmark));
+		for (int i = 0; i < size; i++) {
+			heap[i].count *= scale;
+			heap[i].error *= scale;
+		}
+		landmark = now;
+	}
+
+	private void siftDown(int index) {
+		Entry entry = heap[index];
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+				child++;
+			}
+			if (heap[child].count >= entry.count) {
+				break;
+			}
+			heap[index] = heap[child];
+			heap[index].index = index;
+			index = child;
+		}
+		heap[index] = entry;
+		entry.index = index;
+	}
+
+	private static class Entry {
+		private String key;
+		private double count;
+		private double error;
+		private int index;
+
+		Entry(String key, int index) {
+			this.key = key;
+			this.index = index;
+		}
+	}
+
+	static class Estimate {
+		private final String productId;
+		private final double weight;
+		private final double maxError;
+
+		Estimate(String productId, double weight, double maxError) {
+			this.productId = productId;
+			this.weight = weight;
+			this.maxError = maxError;
+		}
+
+		String getProductId() {
+			return productId;
+		}
+
+		double getWeight() {
+			return weight;
+		}
+
+		double getMaxError() {
+			return maxError;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.packt.webstore.cache;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A fully serialized response body, with its gzipped form when that was
+ * worth keeping.
+ */
+public final class CachedResponse {
+
+	private final String contentType;
+	private final byte[] body;
+	private final byte[] gzipped;
+
+	CachedResponse(String contentType, byte[] body, byte[] gzipped) {
+		this.contentType = contentType;
+		this.body = body;
+		this.gzipped = gzipped;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public int getLength() {
+		return body.length;
+	}
+
+	public boolean isGzipped() {
+		return gzipped != null;
+	}
+
+	long getBytes() {
+		return body.length + (gzipped == null ? 0 : gzipped.length);
+	}
+
+	/**
+	 * Writes the body as is, compressed when the client accepts gzip.
+	 */
+	public void writeTo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		boolean compressed = gzipped != null && acceptsGzip(request.getHeader("Accept-Encoding"));
+		byte[] bytes = compressed ? gzipped : body;
+		if (contentType != null) {
+			response.setContentType(contentType);
+		}
+		response.addHeader("Vary", "Accept, Accept-Encoding");
+		if (compressed) {
+			response.setHeader("Content-Encoding", "gzip");
+		}
+		response.setContentLength(bytes.length);
+		response.getOutputStream().write(bytes);
+	}
+
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.split(";");
+			if (!"gzip".equals(parts[0].trim().toLowerCase(Locale.ROOT))) {
+				continue;
+			}
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].trim();
+				if (parameter.startsWith("q=")) {
+					try {
+						return Double.parseDouble(parameter.substring(2)) > 0;
+					} catch (NumberFormatException e) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,140 @@
+package com.packt.webstore.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.View;
+
+import com.packt.webstore.interceptor.ResponseCacheInterceptor;
+
+/**
+ * Renders through the wrapped view into a buffer and stores the bytes in
+ * the {@link SerializedResponseCache} when the {@link ResponseCacheInterceptor}
+ * marked the request as cacheable. Other requests are rendered as usual.
+ */
+public class CachingView implements View {
+
+	private final View delegate;
+	private final MediaType mediaType;
+
+	@Autowired
+	private SerializedResponseCache responseCache;
+
+	public CachingView(View delegate) {
+		this.delegate = delegate;
+		this.mediaType = MediaType.parseMediaType(delegate.getContentType());
+	}
+
+	@Override
+	public String getContentType() {
+		return delegate.getContentType();
+	}
+
+	@Override
+	public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
+		SerializedResponseCache.Key key = ResponseCacheInterceptor.cacheableKey(request);
+		if (key == null || !key.getMediaType().isCompatibleWith(mediaType)) {
+			delegate.render(model, request, response);
+			return;
+		}
+		BufferingResponse buffered = new BufferingResponse(response);
+		delegate.render(model, request, buffered);
+		responseCache.put(key, response.getContentType(), buffered.toByteArray()).writeTo(request, response);
+	}
+
+	public View getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Collects the body and swallows the length; the cache sets it when the
+	 * body, or its gzipped form, is written out.
+	 */
+	private static class BufferingResponse extends HttpServletResponseWrapper {
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+		private ServletOutputStream outputStream;
+		private PrintWriter writer;
+
+		BufferingResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			if (outputStream == null) {
+				outputStream = new ServletOutputStream() {
+					@Override
+					public void write(int b) {
+						buffer.write(b);
+					}
+
+					@Override
+					public void write(byte[] bytes, int offset, int length) {
+						buffer.write(bytes, offset, length);
+					}
+
+					@Override
+					public boolean isReady() {
+						return true;
+					}
+
+					@Override
+					public void setWriteListener(WriteListener writeListener) {
+						throw new UnsupportedOperationException("Buffered responses are written synchronously");
+					}
+				};
+			}
+			return outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+			}
+			return writer;
+		}
+
+		@Override
+		public void setContentLength(int length) {
+		}
+
+		@Override
+		public void setContentLengthLong(long length) {
+		}
+
+		@Override
+		public void flushBuffer() {
+			if (writer != null) {
+				writer.flush();
+			}
+		}
+
+		@Override
+		public void resetBuffer() {
+			buffer.reset();
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			buffer.reset();
+		}
+
+		byte[] toByteArray() {
+			flushBuffer();
+			return buffer.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.packt.webstore.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rendered page fragments, least recently used first, bounded by their
+ * total size in bytes. Each fragment remembers the object it was rendered
+ * from; a lookup with any other object is a miss, and the next put
+ * replaces the fragment. Versions are compared by identity, which fits a
+ * catalog that publishes a new {@code Product} for every change.
+ */
+@Component
+public class FragmentCache {
+
+	private static final int ENTRY_OVERHEAD = 96;
+
+	@Value("#{systemProperties['webstore.fragmentCache.maxBytes'] ?: 8388608}")
+	private long maxBytes;
+
+	private final LinkedHashMap<String, Fragment> entries = new LinkedHashMap<String, Fragment>(256, 0.75f, true);
+	private long bytes;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder stale = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder bypassed = new LongAdder();
+
+	public String get(String key, Object version) {
+		Fragment fragment;
+		synchronized (this) {
+			fragment = entries.get(key);
+		}
+		if (fragment != null && fragment.version == version) {
+			hits.increment();
+			return fragment.html;
+		}
+		misses.increment();
+		if (fragment != null) {
+			stale.increment();
+		}
+		return null;
+	}
+
+	public void put(String key, Object version, String html) {
+		Fragment fragment = new Fragment(version, html, ENTRY_OVERHEAD + 2L * (key.length() + html.length()));
+		if (fragment.bytes > maxBytes) {
+			return;
+		}
+		synchronized (this) {
+			Fragment previous = entries.put(key, fragment);
+			if (previous != null) {
+				bytes -= previous.bytes;
+			}
+			bytes += fragment.bytes;
+			Iterator<Fragment> eldest = entries.values().iterator();
+			while (bytes > maxBytes && eldest.hasNext()) {
+				bytes -= eldest.next().bytes;
+				eldest.remove();
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Counts a fragment that had to be rendered without the cache.
+	 */
+	public void bypass() {
+		bypassed.increment();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		synchronized (this) {
+			metrics.put("entries", entries.size());
+			metrics.put("bytes", bytes);
+		}
+		long hitCount = hits.sum();
+		long lookups = hitCount + misses.sum();
+		metrics.put("maxBytes", maxBytes);
+		metrics.put("hits", hitCount);
+		metrics.put("misses", lookups - hitCount);
+		metrics.put("hitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+		metrics.put("stale", stale.sum());
+		metrics.put("evictions", evictions.sum());
+		metrics.put("bypassed", bypassed.sum());
+		return metrics;
+	}
+
+	private static final class Fragment {
+		private final Object version;
+		private final String html;
+		private final long bytes;
+
+		Fragment(Object version, String html, long bytes) {
+			this.version = version;
+			this.html = html;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.packt.webstore.cache;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.PageContext;
+import javax.servlet.jsp.tagext.SimpleTagSupport;
+
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import com.packt.webstore.domain.Product;
+
+/**
+ * Serves the body, the tile of one product, from the {@link FragmentCache}
+ * and renders it only when the product changed or the tile is not cached
+ * for the request locale yet. While the container still rewrites URLs to
+ * carry the session id the body is rendered and not cached, so one
+ * visitor's session id is never served to another.
+ */
+public class ProductTileTag extends SimpleTagSupport {
+
+	private static final String PROBE_URL = "/";
+
+	private Product product;
+
+	public void setProduct(Product product) {
+		this.product = product;
+	}
+
+	@Override
+	public void doTag() throws JspException, IOException {
+		PageContext pageContext = (PageContext) getJspContext();
+		HttpServletRequest request = (HttpServletRequest) pageContext.getRequest();
+		HttpServletResponse response = (HttpServletResponse) pageContext.getResponse();
+		FragmentCache cache = RequestContextUtils.getWebApplicationContext(request).getBean(FragmentCache.class);
+		if (!PROBE_URL.equals(response.encodeURL(PROBE_URL))) {
+			cache.bypass();
+			getJspBody().invoke(null);
+			return;
+		}
+		String key = key(product, RequestContextUtils.getLocale(request));
+		String html = cache.get(key, product);
+		if (html == null) {
+			StringWriter rendered = new StringWriter();
+			getJspBody().invoke(rendered);
+			html = rendered.toString();
+			cache.put(key, product, html);
+		}
+		pageContext.getOut().write(html);
+	}
+
+	static String key(Product product, Locale locale) {
+		return "tile " + product.getProductId() + " " + locale;
+	}
+}
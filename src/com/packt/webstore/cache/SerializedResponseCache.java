@@ -0,0 +1,172 @@
+package com.packt.webstore.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serialized catalog responses of a single catalog version, least recently
+ * used first, bounded by their total size in bytes. Every key is tied to the
+ * version it was looked up for; the first lookup for a newer version drops
+ * all entries, and a response rendered from an older version is never
+ * stored.
+ */
+@Component
+public class SerializedResponseCache {
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Value("#{systemProperties['webstore.responseCache.maxBytes'] ?: 16777216}")
+	private long maxBytes;
+
+	@Value("#{systemProperties['webstore.responseCache.gzip'] ?: true}")
+	private boolean gzip;
+
+	@Value("#{systemProperties['webstore.responseCache.minGzipBytes'] ?: 1024}")
+	private int minGzipBytes;
+
+	private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<String, CachedResponse>(64, 0.75f, true);
+	private long version = Long.MIN_VALUE;
+	private long bytes;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	public CachedResponse get(Key key) {
+		CachedResponse response;
+		synchronized (this) {
+			response = advance(key.version) ? entries.get(key.route) : null;
+		}
+		if (response == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return response;
+	}
+
+	/**
+	 * Builds the entry for a freshly rendered body and keeps it if it is
+	 * still current and fits. The entry is returned either way so the caller
+	 * can serve it.
+	 */
+	public CachedResponse put(Key key, String contentType, byte[] body) {
+		CachedResponse response = new CachedResponse(contentType, body, gzip && body.length >= minGzipBytes ? gzip(body) : null);
+		if (response.getBytes() > maxBytes) {
+			return response;
+		}
+		synchronized (this) {
+			if (!advance(key.version)) {
+				return response;
+			}
+			CachedResponse previous = entries.put(key.route, response);
+			if (previous != null) {
+				bytes -= previous.getBytes();
+			}
+			bytes += response.getBytes();
+			Iterator<CachedResponse> eldest = entries.values().iterator();
+			while (bytes > maxBytes && eldest.hasNext()) {
+				bytes -= eldest.next().getBytes();
+				eldest.remove();
+				evictions.increment();
+			}
+		}
+		return response;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		synchronized (this) {
+			metrics.put("catalogVersion", version == Long.MIN_VALUE ? null : version);
+			metrics.put("entries", entries.size());
+			metrics.put("bytes", bytes);
+		}
+		long hitCount = hits.sum();
+		long lookups = hitCount + misses.sum();
+		metrics.put("maxBytes", maxBytes);
+		metrics.put("hits", hitCount);
+		metrics.put("misses", lookups - hitCount);
+		metrics.put("hitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+		metrics.put("evictions", evictions.sum());
+		metrics.put("invalidations", invalidations.sum());
+		return metrics;
+	}
+
+	/**
+	 * Moves the cache to the given version when it is newer; false when the
+	 * caller is working from an older one.
+	 */
+	private boolean advance(long keyVersion) {
+		if (keyVersion == version) {
+			return true;
+		}
+		if (keyVersion < version) {
+			return false;
+		}
+		if (!entries.isEmpty()) {
+			invalidations.increment();
+		}
+		entries.clear();
+		bytes = 0;
+		version = keyVersion;
+		return true;
+	}
+
+	private byte[] gzip(byte[] body) {
+		try {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+			GZIPOutputStream out = new GZIPOutputStream(compressed);
+			out.write(body);
+			out.close();
+			return compressed.size() < body.length ? compressed.toByteArray() : null;
+		} catch (IOException e) {
+			logger.warn("Could not gzip a cached response", e);
+			return null;
+		}
+	}
+
+	/**
+	 * A request's place in the cache: route and representation, plus the
+	 * catalog version it is answered from.
+	 */
+	public static final class Key {
+		private final String route;
+		private final long version;
+		private final MediaType mediaType;
+
+		public Key(MediaType mediaType, String route, long version) {
+			this.route = mediaType + " " + route;
+			this.version = version;
+			this.mediaType = mediaType;
+		}
+
+		public MediaType getMediaType() {
+			return mediaType;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		@Override
+		public String toString() {
+			return route + " @" + version;
+		}
+	}
+}
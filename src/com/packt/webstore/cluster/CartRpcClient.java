@@ -0,0 +1,151 @@
+package com.packt.webstore.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+
+import com.packt.webstore.domain.Cart;
+import com.packt.webstore.domain.repository.CartRepository;
+
+/**
+ * {@link CartRepository} view of the cart shard owned by a remote node.
+ */
+public class CartRpcClient implements CartRepository {
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+	private static final int READ_TIMEOUT_MILLIS = 5000;
+
+	private final String node;
+	private final InetSocketAddress address;
+	private final byte[] secret;
+	private final Queue<Connection> idleConnections = new ConcurrentLinkedQueue<Connection>();
+
+	public CartRpcClient(String node, byte[] secret) {
+		this.node = node;
+		this.address = ClusterNodes.toAddress(node);
+		this.secret = secret;
+	}
+
+	@Override
+	public Cart create(Cart cart) {
+		return call(CartRpcProtocol.CREATE, cart.getCartId(), cart);
+	}
+
+	@Override
+	public Cart read(String cartId) {
+		return call(CartRpcProtocol.READ, cartId, null);
+	}
+
+	@Override
+	public void update(String cartId, Cart cart) {
+		call(CartRpcProtocol.UPDATE, cartId, cart);
+	}
+
+	@Override
+	public void delete(String cartId) {
+		call(CartRpcProtocol.DELETE, cartId, null);
+	}
+
+	public void transfer(Cart cart) {
+		call(CartRpcProtocol.TRANSFER, cart.getCartId(), cart);
+	}
+
+	public void close() {
+		Connection connection;
+		while ((connection = idleConnections.poll()) != null) {
+			connection.close();
+		}
+	}
+
+	private Cart call(byte op, String cartId, Cart cart) {
+		Connection connection = idleConnections.poll();
+		while (connection != null && connection.isStale()) {
+			connection.close();
+			connection = idleConnections.poll();
+		}
+		try {
+			if (connection == null) {
+				connection = new Connection(address, secret);
+			}
+			byte[] payload = CartRpcProtocol.encode(cart);
+			connection.out.writeByte(op);
+			connection.out.writeUTF(cartId);
+			connection.out.writeInt(payload.length);
+			connection.out.write(payload);
+			connection.out.write(CartRpcProtocol.tag(connection.mac, connection.nonce, connection.sequence++, op, cartId, payload));
+			connection.out.flush();
+
+			byte status = connection.in.readByte();
+			Cart result = null;
+			String message = null;
+			if (status == CartRpcProtocol.OK) {
+				byte[] body = new byte[CartRpcProtocol.readLength(connection.in)];
+				connection.in.readFully(body);
+				result = CartRpcProtocol.decode(body);
+			} else if (status != CartRpcProtocol.NOT_FOUND) {
+				message = connection.in.readUTF();
+			}
+			connection.lastUsed = System.nanoTime();
+			idleConnections.offer(connection);
+
+			if (status == CartRpcProtocol.ILLEGAL_ARGUMENT) {
+				throw new IllegalArgumentException(message);
+			}
+			if (status == CartRpcProtocol.ERROR) {
+				throw new IllegalStateException("Cart node " + node + " failed: " + message);
+			}
+			return result;
+		} catch (IOException e) {
+			if (connection != null) {
+				connection.close();
+			}
+			throw new IllegalStateException("Cart node " + node + " is unreachable", e);
+		}
+	}
+
+	private static class Connection {
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private final byte[] nonce = new byte[CartRpcProtocol.NONCE_BYTES];
+		private final Mac mac;
+		private long sequence;
+		private long lastUsed;
+
+		Connection(InetSocketAddress address, byte[] secret) throws IOException {
+			socket = new Socket();
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+			socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			in.readFully(nonce);
+			mac = CartRpcProtocol.mac(secret);
+		}
+
+		/**
+		 * Whether the server may already have closed the connection for
+		 * being idle.
+		 */
+		boolean isStale() {
+			return System.nanoTime() - lastUsed > TimeUnit.MILLISECONDS.toNanos(CartRpcProtocol.IDLE_TIMEOUT_MILLIS / 2);
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing left to release
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.packt.webstore.cluster;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.packt.webstore.domain.Cart;
+
+/**
+ * Wire format shared by {@link CartRpcServer} and {@link CartRpcClient}.
+ * On connect the server sends a random nonce. A request is an opcode
+ * byte, the cart id, a length-prefixed Smile encoded cart and an
+ * HMAC-SHA256 tag over the nonce, the request's sequence number on the
+ * connection and the request itself, keyed with the cluster secret, so
+ * only nodes holding the secret can call and no request can be replayed.
+ * A response is a status byte followed by a payload or an error message.
+ */
+final class CartRpcProtocol {
+
+	static final byte CREATE = 1;
+	static final byte READ = 2;
+	static final byte UPDATE = 3;
+	static final byte DELETE = 4;
+	static final byte TRANSFER = 5;
+
+	static final byte OK = 0;
+	static final byte NOT_FOUND = 1;
+	static final byte ILLEGAL_ARGUMENT = 2;
+	static final byte ERROR = 3;
+
+	static final int MAX_PAYLOAD_BYTES = 4 * 1024 * 1024;
+
+	/**
+	 * Connections idle this long are closed by the server; clients retire
+	 * theirs after half of it.
+	 */
+	static final int IDLE_TIMEOUT_MILLIS = 60000;
+
+	static final int NONCE_BYTES = 16;
+	static final int TAG_BYTES = 32;
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper(new SmileFactory())
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private CartRpcProtocol() {
+	}
+
+	static byte[] encode(Cart cart) throws IOException {
+		return cart == null ? new byte[0] : MAPPER.writeValueAsBytes(cart);
+	}
+
+	/**
+	 * Reads a payload length, refusing one no cart could need before any
+	 * memory is allocated for it.
+	 */
+	static int readLength(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+			throw new IOException("Cart RPC payload length " + length + " is outside 0.." + MAX_PAYLOAD_BYTES);
+		}
+		return length;
+	}
+
+	static Cart decode(byte[] bytes) throws IOException {
+		return bytes.length == 0 ? null : MAPPER.readValue(bytes, Cart.class);
+	}
+
+	/**
+	 * A new MAC keyed with the cluster secret; one per connection, as they
+	 * are not thread safe.
+	 */
+	static Mac mac(byte[] secret) {
+		try {
+			Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Cannot sign cart RPC requests with " + MAC_ALGORITHM, e);
+		}
+	}
+
+	static byte[] tag(Mac mac, byte[] nonce, long sequence, byte op, String cartId, byte[] payload) {
+		byte[] id = cartId.getBytes(StandardCharsets.UTF_8);
+		mac.update(nonce);
+		mac.update(ByteBuffer.allocate(17).putLong(sequence).put(op).putInt(id.length).putInt(payload.length).array());
+		mac.update(id);
+		mac.update(payload);
+		return mac.doFinal();
+	}
+}
@@ -0,0 +1,204 @@
+package com.packt.webstore.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+
+import org.apache.log4j.Logger;
+
+import com.packt.webstore.domain.Cart;
+import com.packt.webstore.domain.repository.CartRepository;
+
+/**
+ * Serves the local cart shard to the other nodes of the ring. Listens on
+ * the node's own cluster address only, and drops any connection whose
+ * requests are not signed with the cluster secret. Each connection holds
+ * a worker thread; at most {@value #MAX_CONNECTIONS} are served at once,
+ * further ones are closed straight away, and a connection idle for
+ * {@link CartRpcProtocol#IDLE_TIMEOUT_MILLIS} is closed.
+ */
+public class CartRpcServer {
+
+	private static final int MAX_CONNECTIONS = 128;
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	private final InetSocketAddress address;
+	private final int port;
+	private final byte[] secret;
+	private final CartRepository localShard;
+	private final SecureRandom random = new SecureRandom();
+	private final ThreadPoolExecutor workers = new ThreadPoolExecutor(0, MAX_CONNECTIONS, 60, TimeUnit.SECONDS,
+			new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "cart-rpc-" + port);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	private volatile ServerSocket serverSocket;
+
+	public CartRpcServer(InetSocketAddress address, byte[] secret, CartRepository localShard) {
+		this.address = address;
+		this.port = address.getPort();
+		this.secret = secret;
+		this.localShard = localShard;
+	}
+
+	public void start() throws IOException {
+		ServerSocket socket = new ServerSocket();
+		socket.bind(address);
+		serverSocket = socket;
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				acceptLoop();
+			}
+		}, "cart-rpc-accept-" + port);
+		acceptor.setDaemon(true);
+		acceptor.start();
+		logger.info("Cart RPC server listening on " + address);
+	}
+
+	public void stop() {
+		try {
+			if (serverSocket != null) {
+				serverSocket.close();
+			}
+		} catch (IOException e) {
+			logger.warn("Failed to close cart RPC server socket", e);
+		}
+		workers.shutdownNow();
+	}
+
+	private void acceptLoop() {
+		while (!serverSocket.isClosed()) {
+			try {
+				final Socket socket = serverSocket.accept();
+				try {
+					workers.execute(new Runnable() {
+						@Override
+						public void run() {
+							serve(socket);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					logger.warn("Refused a cart RPC connection from " + socket.getRemoteSocketAddress() + ": "
+							+ MAX_CONNECTIONS + " connections already open");
+					close(socket);
+				}
+			} catch (SocketException e) {
+				return;
+			} catch (IOException e) {
+				logger.warn("Failed to accept cart RPC connection", e);
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try {
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(CartRpcProtocol.IDLE_TIMEOUT_MILLIS);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			byte[] nonce = new byte[CartRpcProtocol.NONCE_BYTES];
+			random.nextBytes(nonce);
+			out.write(nonce);
+			out.flush();
+			Mac mac = CartRpcProtocol.mac(secret);
+			byte[] tag = new byte[CartRpcProtocol.TAG_BYTES];
+			for (long sequence = 0; ; sequence++) {
+				byte op = in.readByte();
+				String cartId = in.readUTF();
+				byte[] payload = new byte[CartRpcProtocol.readLength(in)];
+				in.readFully(payload);
+				in.readFully(tag);
+				if (!MessageDigest.isEqual(tag, CartRpcProtocol.tag(mac, nonce, sequence, op, cartId, payload))) {
+					logger.warn("Dropped a cart RPC connection from " + socket.getRemoteSocketAddress()
+							+ ": request not signed with the cluster secret");
+					return;
+				}
+				respond(out, op, cartId, CartRpcProtocol.decode(payload));
+				out.flush();
+			}
+		} catch (EOFException e) {
+			// peer closed the connection
+		} catch (SocketTimeoutException e) {
+			// idle for too long, the peer reconnects when it needs to
+		} catch (IOException e) {
+			logger.warn("Cart RPC connection failed", e);
+		} finally {
+			close(socket);
+		}
+	}
+
+	private static void close(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// nothing left to release
+		}
+	}
+
+	private void respond(DataOutputStream out, byte op, String cartId, Cart cart) throws IOException {
+		try {
+			Cart result = null;
+			switch (op) {
+			case CartRpcProtocol.CREATE:
+				result = localShard.create(cart);
+				break;
+			case CartRpcProtocol.READ:
+				result = localShard.read(cartId);
+				if (result == null) {
+					out.writeByte(CartRpcProtocol.NOT_FOUND);
+					return;
+				}
+				break;
+			case CartRpcProtocol.UPDATE:
+				localShard.update(cartId, cart);
+				break;
+			case CartRpcProtocol.DELETE:
+				localShard.delete(cartId);
+				break;
+			case CartRpcProtocol.TRANSFER:
+				if (localShard.read(cartId) == null) {
+					localShard.create(cart);
+				} else {
+					localShard.update(cartId, cart);
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown cart RPC operation " + op);
+			}
+			byte[] body = CartRpcProtocol.encode(result);
+			out.writeByte(CartRpcProtocol.OK);
+			out.writeInt(body.length);
+			out.write(body);
+		} catch (IllegalArgumentException e) {
+			out.writeByte(CartRpcProtocol.ILLEGAL_ARGUMENT);
+			out.writeUTF(String.valueOf(e.getMessage()));
+		} catch (RuntimeException e) {
+			logger.error("Cart RPC operation " + op + " failed for cart " + cartId, e);
+			out.writeByte(CartRpcProtocol.ERROR);
+			out.writeUTF(String.valueOf(e.getMessage()));
+		}
+	}
+}
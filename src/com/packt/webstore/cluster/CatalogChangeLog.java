@@ -0,0 +1,68 @@
+package com.packt.webstore.cluster;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.packt.webstore.domain.CatalogChange;
+import com.packt.webstore.exception.ChangeLogTruncatedException;
+
+/**
+ * Bounded, sequenced log of catalog mutations. Followers that fall further
+ * behind than the retained tail have to bootstrap from a snapshot again.
+ */
+public class CatalogChangeLog {
+
+	private final int capacity;
+	private final Deque<CatalogChange> changes = new ArrayDeque<CatalogChange>();
+	private long lastSequence;
+
+	public CatalogChangeLog(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public synchronized CatalogChange append(CatalogChange change) {
+		change.setSequence(lastSequence + 1);
+		change.setTimestamp(System.currentTimeMillis());
+		return appendReplicated(change);
+	}
+
+	public synchronized CatalogChange appendReplicated(CatalogChange change) {
+		if (change.getSequence() != lastSequence + 1) {
+			throw new IllegalStateException("Expected change " + (lastSequence + 1) + " but got " + change.getSequence());
+		}
+		if (changes.size() == capacity) {
+			changes.removeFirst();
+		}
+		changes.addLast(change);
+		lastSequence = change.getSequence();
+		return change;
+	}
+
+	public synchronized List<CatalogChange> getChangesSince(long sequence, int maxChanges) {
+		long firstRetained = changes.isEmpty() ? lastSequence + 1 : changes.getFirst().getSequence();
+		if (sequence + 1 < firstRetained || sequence > lastSequence) {
+			throw new ChangeLogTruncatedException(sequence);
+		}
+		List<CatalogChange> since = new ArrayList<CatalogChange>();
+		for (CatalogChange change : changes) {
+			if (since.size() == maxChanges) {
+				break;
+			}
+			if (change.getSequence() > sequence) {
+				since.add(change);
+			}
+		}
+		return since;
+	}
+
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	public synchronized void reset(long sequence) {
+		changes.clear();
+		lastSequence = sequence;
+	}
+}
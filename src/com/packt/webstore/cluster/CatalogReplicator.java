@@ -0,0 +1,220 @@
+package com.packt.webstore.cluster;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.packt.webstore.converter.MappingJackson2SmileHttpMessageConverter;
+import com.packt.webstore.domain.CatalogChange;
+import com.packt.webstore.domain.CatalogChangeBatch;
+import com.packt.webstore.domain.CatalogSnapshot;
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.ReplicationStatus;
+import com.packt.webstore.domain.repository.impl.CatalogVersion;
+import com.packt.webstore.domain.repository.impl.OutMemoryProductRepository;
+import com.packt.webstore.service.CartService;
+
+/**
+ * Tails the catalog change log of the node given by the
+ * {@code webstore.catalog.leader} system property (its base URL, e.g.
+ * http://localhost:8080/Spring01). Without that property this node is the
+ * leader and the replicator stays idle. The leader only serves its log
+ * to addresses listed in its {@code webstore.catalog.followers}.
+ * Price changes and discontinuations reprice the carts this node holds
+ * once they are applied here, as the leader does for its own carts.
+ */
+@Component
+public class CatalogReplicator {
+
+	private static final int MAX_CHANGES_PER_POLL = 1000;
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Value("#{systemProperties['webstore.catalog.leader'] ?: ''}")
+	private String leaderUrl;
+
+	@Value("#{systemProperties['webstore.catalog.pollMillis'] ?: 500}")
+	private long pollMillis;
+
+	@Autowired
+	@Qualifier("OutMemory")
+	private OutMemoryProductRepository productRepository;
+
+	@Autowired
+	private CartService cartService;
+
+	private final ObjectMapper mapper = new ObjectMapper(new SmileFactory())
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	private ScheduledExecutorService scheduler;
+	private volatile boolean bootstrapped;
+	private volatile long leaderSequence;
+	private volatile long caughtUpAt;
+
+	@PostConstruct
+	public void start() {
+		if (!isFollower()) {
+			return;
+		}
+		productRepository.setLeader(leaderUrl);
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "catalog-replicator");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				poll();
+			}
+		}, 0, pollMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	public boolean isFollower() {
+		return !leaderUrl.isEmpty();
+	}
+
+	public ReplicationStatus getStatus() {
+		ReplicationStatus status = new ReplicationStatus();
+		long applied = productRepository.getChangeLog().getLastSequence();
+		status.setAppliedSequence(applied);
+		if (isFollower()) {
+			status.setRole("follower");
+			status.setLeader(leaderUrl);
+			status.setLeaderSequence(leaderSequence);
+			status.setLagChanges(Math.max(0, leaderSequence - applied));
+			status.setLagMillis(bootstrapped && applied >= leaderSequence ? 0 : System.currentTimeMillis() - caughtUpAt);
+		} else {
+			status.setRole("leader");
+			status.setLeaderSequence(applied);
+		}
+		return status;
+	}
+
+	void poll() {
+		try {
+			if (!bootstrapped) {
+				bootstrap();
+			}
+			long applied = productRepository.getChangeLog().getLastSequence();
+			CatalogChangeBatch batch = fetch("/replication/log?since=" + applied + "&max=" + MAX_CHANGES_PER_POLL,
+					CatalogChangeBatch.class);
+			if (batch == null) {
+				logger.warn("Catalog change " + applied + " is no longer retained by the leader, bootstrapping again");
+				bootstrapped = false;
+				return;
+			}
+			if (!batch.getChanges().isEmpty()) {
+				productRepository.apply(batch.getChanges());
+				repriceCarts(batch.getChanges());
+			}
+			leaderSequence = batch.getLeaderSequence();
+			if (productRepository.getChangeLog().getLastSequence() >= leaderSequence) {
+				caughtUpAt = System.currentTimeMillis();
+			}
+		} catch (Exception e) {
+			logger.warn("Catalog replication from " + leaderUrl + " failed: " + e.getMessage());
+		}
+	}
+
+	private void bootstrap() throws IOException {
+		CatalogSnapshot snapshot = fetch("/replication/snapshot", CatalogSnapshot.class);
+		if (snapshot == null) {
+			throw new IOException("Leader returned no snapshot");
+		}
+		CatalogVersion previous = productRepository.getCatalog();
+		productRepository.restore(snapshot);
+		leaderSequence = snapshot.getSequence();
+		caughtUpAt = System.currentTimeMillis();
+		bootstrapped = true;
+		logger.info("Catalog bootstrapped from " + leaderUrl + " at change " + snapshot.getSequence() + " with "
+				+ snapshot.getProducts().size() + " products");
+		for (Product product : snapshot.getProducts()) {
+			Product before = previous.get(product.getProductId());
+			if (before != null && (before.isDiscontinued() != product.isDiscontinued()
+					|| before.getUnitPrice().compareTo(product.getUnitPrice()) != 0)) {
+				repriceCarts(product);
+			}
+		}
+	}
+
+	/**
+	 * Reprices once per product, with the last version of it in the batch.
+	 */
+	private void repriceCarts(List<CatalogChange> changes) {
+		Map<String, Product> updated = new LinkedHashMap<String, Product>();
+		for (CatalogChange change : changes) {
+			if (CatalogChange.PRODUCT_UPDATED.equals(change.getType())) {
+				updated.put(change.getProductId(), change.getProduct());
+			}
+		}
+		for (Product product : updated.values()) {
+			repriceCarts(product);
+		}
+	}
+
+	/**
+	 * The change is already applied and will not be fetched again, so a
+	 * failure is only logged and does not stop the other products.
+	 */
+	private void repriceCarts(Product product) {
+		try {
+			cartService.productChanged(product);
+		} catch (RuntimeException e) {
+			logger.error("Could not reprice carts holding " + product.getProductId(), e);
+		}
+	}
+
+	private <T> T fetch(String path, Class<T> type) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(leaderUrl + path).openConnection();
+		connection.setRequestProperty("Accept", MappingJackson2SmileHttpMessageConverter.SMILE.toString());
+		connection.setConnectTimeout(1000);
+		connection.setReadTimeout(5000);
+		try {
+			int status = connection.getResponseCode();
+			if (status == HttpURLConnection.HTTP_GONE) {
+				return null;
+			}
+			if (status != HttpURLConnection.HTTP_OK) {
+				throw new IOException("Leader responded with HTTP " + status + " for " + path);
+			}
+			InputStream in = connection.getInputStream();
+			try {
+				return mapper.readValue(in, type);
+			} finally {
+				in.close();
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.packt.webstore.cluster;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class ClusterNodes {
+
+	private ClusterNodes() {
+	}
+
+	public static List<String> parse(String nodes) {
+		List<String> parsed = new ArrayList<String>();
+		if (nodes == null) {
+			return parsed;
+		}
+		for (String node : nodes.split(",")) {
+			if (!node.trim().isEmpty()) {
+				parsed.add(node.trim());
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * A Spring Security expression that grants access from any of the
+	 * given comma separated addresses or subnets, or to nobody when there
+	 * are none.
+	 */
+	public static String ipAddressAccess(String addresses) {
+		StringBuilder access = new StringBuilder();
+		for (String address : parse(addresses)) {
+			if (!address.matches("[0-9A-Fa-f.:/]+")) {
+				throw new IllegalArgumentException("Not an IP address or subnet: " + address);
+			}
+			access.append(access.length() == 0 ? "" : " or ").append("hasIpAddress('").append(address).append("')");
+		}
+		return access.length() == 0 ? "false" : access.toString();
+	}
+
+	public static InetSocketAddress toAddress(String node) {
+		int colon = node.lastIndexOf(':');
+		if (colon <= 0 || colon == node.length() - 1) {
+			throw new IllegalArgumentException("Node must be given as host:port, was " + node);
+		}
+		return new InetSocketAddress(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)));
+	}
+}
@@ -0,0 +1,78 @@
+package com.packt.webstore.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class ConsistentHashRing {
+
+	private final int virtualNodes;
+	private final Set<String> nodes = new LinkedHashSet<String>();
+	private volatile TreeMap<Long, String> ring = new TreeMap<Long, String>();
+
+	public ConsistentHashRing(int virtualNodes) {
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException("Virtual node count must be positive, was " + virtualNodes);
+		}
+		this.virtualNodes = virtualNodes;
+	}
+
+	public synchronized boolean addNode(String node) {
+		if (!nodes.add(node)) {
+			return false;
+		}
+		TreeMap<Long, String> newRing = new TreeMap<Long, String>(ring);
+		for (int i = 0; i < virtualNodes; i++) {
+			newRing.put(hash(node + "#" + i), node);
+		}
+		ring = newRing;
+		return true;
+	}
+
+	public synchronized boolean removeNode(String node) {
+		if (!nodes.remove(node)) {
+			return false;
+		}
+		TreeMap<Long, String> newRing = new TreeMap<Long, String>(ring);
+		for (int i = 0; i < virtualNodes; i++) {
+			newRing.remove(hash(node + "#" + i));
+		}
+		ring = newRing;
+		return true;
+	}
+
+	public String getNode(String key) {
+		TreeMap<Long, String> current = ring;
+		if (current.isEmpty()) {
+			throw new IllegalStateException("No nodes in the hash ring");
+		}
+		Map.Entry<Long, String> owner = current.ceilingEntry(hash(key));
+		return owner == null ? current.firstEntry().getValue() : owner.getValue();
+	}
+
+	public synchronized Set<String> getNodes() {
+		return Collections.unmodifiableSet(new LinkedHashSet<String>(nodes));
+	}
+
+	public synchronized int size() {
+		return nodes.size();
+	}
+
+	static long hash(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+			long h = 0;
+			for (int i = 0; i < 8; i++) {
+				h = (h << 8) | (digest[i] & 0xff);
+			}
+			return h;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not available", e);
+		}
+	}
+}
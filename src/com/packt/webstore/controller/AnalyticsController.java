@@ -0,0 +1,37 @@
+package com.packt.webstore.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.packt.webstore.analytics.SalesAnalytics;
+import com.packt.webstore.domain.ProductSales;
+
+@Controller
+@RequestMapping(value="/products/admin/analytics")
+public class AnalyticsController {
+
+	@Autowired
+	private SalesAnalytics salesAnalytics;
+	
+	@RequestMapping(value="/sales", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> sales(@RequestParam(value="top", defaultValue="10") int top){
+		Map<String, Object> sales = new LinkedHashMap<String, Object>();
+		sales.put("windowMinutes", salesAnalytics.getWindowMinutes());
+		sales.put("bestsellers", salesAnalytics.getBestsellers(top));
+		sales.put("categories", salesAnalytics.getCategorySales());
+		sales.put("stockOutForecast", salesAnalytics.getStockOutForecast(top));
+		return sales;
+	}
+	
+	@RequestMapping(value="/sales/product", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody ProductSales productSales(@RequestParam("id") String productId){
+		return salesAnalytics.getProductSales(productId);
+	}
+}
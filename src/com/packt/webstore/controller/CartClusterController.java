@@ -0,0 +1,63 @@
+package com.packt.webstore.controller;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.packt.webstore.domain.repository.impl.ShardedCartRepositoryImpl;
+
+/**
+ * Cart ring membership. A join or leave has to be posted to every node of
+ * the ring, one node at a time.
+ */
+@Controller
+@RequestMapping(value="/products/admin/cart-nodes")
+public class CartClusterController {
+
+	@Autowired
+	@Qualifier("ShardedCart")
+	private ShardedCartRepositoryImpl cartRepository;
+
+	@RequestMapping(method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> nodes(){
+		return status(0);
+	}
+
+	@RequestMapping(value="/join", method = RequestMethod.POST, produces = "application/json")
+	public @ResponseBody Map<String, Object> join(@RequestParam("node") String node) throws IOException{
+		return status(cartRepository.addNode(node));
+	}
+
+	@RequestMapping(value="/leave", method = RequestMethod.POST, produces = "application/json")
+	public @ResponseBody Map<String, Object> leave(@RequestParam("node") String node){
+		return status(cartRepository.removeNode(node));
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason="Illegal request, please verify your payload")
+	public void handleClientErrors(Exception ex) { }
+
+	@ExceptionHandler(IllegalStateException.class)
+	@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason="Carts could not be handed off, the ring is unchanged")
+	public void handleHandOffErrors(Exception ex) { }
+
+	private Map<String, Object> status(int movedCarts) {
+		Map<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("localNode", cartRepository.getLocalNode());
+		status.put("nodes", cartRepository.getNodes());
+		status.put("localCarts", cartRepository.getLocalCartCount());
+		status.put("movedCarts", movedCarts);
+		return status;
+	}
+}
@@ -1,27 +1,51 @@
 package com.packt.webstore.controller;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.packt.webstore.exception.CartNotOwnedException;
+import com.packt.webstore.identity.CartIdentity;
 
 @Controller
 @RequestMapping(value="/cart")
 public class CartController {
+
+	@Autowired
+	private CartIdentity cartIdentity;
 	
+	/**
+	 * With cookie identity the cart is shown here rather than behind a
+	 * redirect, so its id never appears in a URL.
+	 */
 	@RequestMapping
-	public String get(HttpServletRequest request){
-		return "redirect:/cart/"+request.getSession(true).getId();
+	public String get(HttpServletRequest request, HttpServletResponse response, Model model){
+		String cartId = cartIdentity.cartId(request, response);
+		if (cartIdentity.isSessionless()) {
+			model.addAttribute("cartId", cartId);
+			return "cart";
+		}
+		return "redirect:/cart/"+cartId;
 	}
 	
 	@RequestMapping(value="/{cartId}", method = RequestMethod.GET)
-	public String getCart(@PathVariable("cartId") String cartId, Model model){
+	public String getCart(@PathVariable("cartId") String cartId, Model model, HttpServletRequest request){
+		cartIdentity.checkOwner(request, cartId);
 		model.addAttribute("cartId", cartId);
 		return "cart";
 	}
 	
+	@ExceptionHandler(CartNotOwnedException.class)
+	@ResponseStatus(value = HttpStatus.FORBIDDEN, reason="This cart belongs to another visitor")
+	public void handleForeignCart(Exception ex) { }
 	
 }
@@ -1,6 +1,7 @@
 package com.packt.webstore.controller;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -15,8 +16,11 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 import com.packt.webstore.domain.Cart;
 import com.packt.webstore.domain.CartItem;
+import com.packt.webstore.domain.CompactCart;
 import com.packt.webstore.domain.Product;
+import com.packt.webstore.exception.CartNotOwnedException;
 import com.packt.webstore.exception.ProductNotFoundException;
+import com.packt.webstore.identity.CartIdentity;
 import com.packt.webstore.service.CartService;
 import com.packt.webstore.service.ProductService;
 
@@ -29,6 +33,9 @@ public class CartRestController {
 	
 	@Autowired
 	private ProductService productService;
+
+	@Autowired
+	private CartIdentity cartIdentity;
 	
 	@RequestMapping(method = RequestMethod.POST)
 	public @ResponseBody Cart create(@RequestBody Cart cart){
@@ -36,52 +43,60 @@ public class CartRestController {
 	}
 	
 	@RequestMapping(value="/{cartId}", method = RequestMethod.GET)
-	public @ResponseBody Cart read(@PathVariable(value = "cartId") String cartId){
+	public @ResponseBody Cart read(@PathVariable(value = "cartId") String cartId, HttpServletRequest request){
+		cartIdentity.checkOwner(request, cartId);
 		return cartService.read(cartId);
 	}
 	
+	@RequestMapping(value="/{cartId}/compact", method = RequestMethod.GET,
+			produces = {"application/json", "application/x-jackson-smile"})
+	public @ResponseBody CompactCart readCompact(@PathVariable(value = "cartId") String cartId,
+			HttpServletRequest request){
+		cartIdentity.checkOwner(request, cartId);
+		Cart cart = cartService.read(cartId);
+		if(cart == null){
+			throw new IllegalArgumentException("No cart found with cart Id " + cartId);
+		}
+		return new CompactCart(cart);
+	}
+	
 	@RequestMapping(value="/{cartId}", method = RequestMethod.PUT)
 	@ResponseStatus(value=HttpStatus.NO_CONTENT)
-	public void update(String cartId, @RequestBody Cart cart){
+	public void update(@PathVariable(value="cartId") String cartId, @RequestBody Cart cart,
+			HttpServletRequest request){
+		cartIdentity.checkOwner(request, cartId);
 		cartService.update(cartId, cart);
 	}
 	
 	@RequestMapping(value="/{cartId}", method = RequestMethod.DELETE)
 	@ResponseStatus(value=HttpStatus.NO_CONTENT)
-	public void delete(@PathVariable(value="cartId") String cartId){
+	public void delete(@PathVariable(value="cartId") String cartId, HttpServletRequest request){
+		cartIdentity.checkOwner(request, cartId);
 		cartService.delete(cartId);
 	}
 	
 	@RequestMapping(value="/add/{productId}", method = RequestMethod.PUT)
 	@ResponseStatus(value = HttpStatus.NO_CONTENT)
-	public void addItem(@PathVariable(value="productId") String productId, HttpServletRequest request){
-		String sessionId = request.getSession().getId();
-		Cart cart = cartService.read(sessionId);
-		System.out.println(cart);
-		
-		if(cart == null){
-			cartService.create(new Cart(sessionId));
-		}
+	public void addItem(@PathVariable(value="productId") String productId, HttpServletRequest request,
+			HttpServletResponse response){
+		String cartId = cartIdentity.cartId(request, response);
+		Cart cart = cartFor(cartId);
 		
 		Product product = productService.getProductById(productId);
 		if(product == null) {
 			throw new IllegalArgumentException(new ProductNotFoundException(productId));
 		}
 		
-		cart.addCartItem(new CartItem(product));
-		cartService.update(sessionId, cart);
-		
+		cartService.addItem(cartId, cart, product);
 	}
 	
 	@RequestMapping(value="/remove/{productId}", method = RequestMethod.PUT)
 	@ResponseStatus(value = HttpStatus.NO_CONTENT)
-	public void removeItem(@PathVariable("productId") String productId, HttpServletRequest request){
+	public void removeItem(@PathVariable("productId") String productId, HttpServletRequest request,
+			HttpServletResponse response){
 		
-		String sessionId = request.getSession().getId();
-		Cart cart = cartService.read(sessionId);
-		if(cart == null){
-			cart = cartService.create(new Cart(sessionId));
-		}
+		String cartId = cartIdentity.cartId(request, response);
+		Cart cart = cartFor(cartId);
 		
 		Product product = productService.getProductById(productId);
 		if(product == null){
@@ -89,9 +104,29 @@ public class CartRestController {
 		}
 		
 		cart.removeCartItem(new CartItem(product));
-		cartService.update(sessionId, cart);
+		cartService.update(cartId, cart);
 	}
 	
+	/**
+	 * Two first requests of a visitor may race to create its cart; the
+	 * loser uses the cart the winner created.
+	 */
+	private Cart cartFor(String cartId){
+		Cart cart = cartService.read(cartId);
+		if(cart == null){
+			try{
+				cart = cartService.create(new Cart(cartId));
+			} catch(IllegalArgumentException e){
+				cart = cartService.read(cartId);
+			}
+		}
+		return cart;
+	}
+	
+	@ExceptionHandler(CartNotOwnedException.class)
+	@ResponseStatus(value = HttpStatus.FORBIDDEN, reason="This cart belongs to another visitor")
+	public void handleForeignCart(Exception ex) { }
+	
 	@ExceptionHandler(IllegalArgumentException.class)
 	@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason="Illegal request, please verify your payload")
 	public void handleClientErrors(Exception ex) { }
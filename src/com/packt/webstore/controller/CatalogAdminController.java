@@ -0,0 +1,99 @@
+package com.packt.webstore.controller;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.exception.ProductNotFoundException;
+import com.packt.webstore.scan.CatalogScanner;
+import com.packt.webstore.scan.ProductPredicate;
+import com.packt.webstore.scan.ProductPredicates;
+import com.packt.webstore.service.ProductService;
+
+@Controller
+@RequestMapping(value="/products/admin")
+public class CatalogAdminController {
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private CatalogScanner catalogScanner;
+
+	@RequestMapping(value="/price", method = RequestMethod.POST, produces = "application/json")
+	public @ResponseBody Map<String, Object> updatePrice(@RequestParam("id") String productId,
+			@RequestParam("price") BigDecimal unitPrice){
+		return result(productId, productService.updatePrice(productId, unitPrice));
+	}
+
+	@RequestMapping(value="/discontinue", method = RequestMethod.POST, produces = "application/json")
+	public @ResponseBody Map<String, Object> discontinue(@RequestParam("id") String productId){
+		return result(productId, productService.discontinue(productId));
+	}
+
+	/**
+	 * Criteria are combined with and; the cheap flag and id checks run
+	 * before the description search.
+	 */
+	@RequestMapping(value="/scan", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> scan(
+			@RequestParam(value="discontinued", required=false) Boolean discontinued,
+			@RequestParam(value="category", required=false) String category,
+			@RequestParam(value="stockBelow", required=false) Long stockBelow,
+			@RequestParam(value="descriptionContains", required=false) String descriptionContains,
+			@RequestParam(value="limit", defaultValue="100") int limit){
+		List<ProductPredicate> criteria = new ArrayList<ProductPredicate>();
+		if (discontinued != null) {
+			criteria.add(ProductPredicates.discontinued(discontinued));
+		}
+		if (category != null) {
+			criteria.add(ProductPredicates.category(category));
+		}
+		if (stockBelow != null) {
+			criteria.add(ProductPredicates.stockBelow(stockBelow));
+		}
+		if (descriptionContains != null) {
+			criteria.add(ProductPredicates.descriptionContains(descriptionContains));
+		}
+		ProductPredicate predicate = ProductPredicates.and(criteria);
+		List<Product> products = catalogScanner.scan(predicate, limit);
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("criteria", predicate.toString());
+		result.put("count", products.size());
+		result.put("products", products);
+		return result;
+	}
+
+	@RequestMapping(value="/scan/metrics", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> scanMetrics(){
+		return catalogScanner.getMetrics();
+	}
+
+	@ExceptionHandler(ProductNotFoundException.class)
+	@ResponseStatus(value = HttpStatus.NOT_FOUND, reason="No product found!")
+	public void handleNotFound(Exception ex) { }
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason="Illegal request, please verify your payload")
+	public void handleClientErrors(Exception ex) { }
+
+	private static Map<String, Object> result(String productId, int repricedCarts) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("productId", productId);
+		result.put("repricedCarts", repricedCarts);
+		return result;
+	}
+}
@@ -0,0 +1,34 @@
+package com.packt.webstore.controller;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.packt.webstore.service.WarmupService;
+
+@Controller
+@RequestMapping(value="/health")
+public class HealthController {
+
+	@Autowired
+	private WarmupService warmupService;
+	
+	@RequestMapping(value="/ready", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> ready(HttpServletResponse response){
+		if(!warmupService.isReady()){
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		}
+		return warmupService.getStatus();
+	}
+	
+	@RequestMapping(value="/live", method = RequestMethod.GET)
+	public @ResponseBody String live(){
+		return "OK";
+	}
+}
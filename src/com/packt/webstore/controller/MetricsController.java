@@ -0,0 +1,73 @@
+package com.packt.webstore.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.packt.webstore.analytics.CoPurchaseRecommender;
+import com.packt.webstore.cache.FragmentCache;
+import com.packt.webstore.cache.SerializedResponseCache;
+import com.packt.webstore.event.OrderEventPipeline;
+import com.packt.webstore.interceptor.AdmissionControlInterceptor;
+import com.packt.webstore.push.PushHub;
+
+/**
+ * Runtime metrics of the storefront components, under the admin area so
+ * they need ROLE_ADMIN in both security profiles.
+ */
+@Controller
+@RequestMapping(value="/products/admin/metrics")
+public class MetricsController {
+
+	@Autowired
+	private AdmissionControlInterceptor admissionControlInterceptor;
+
+	@Autowired
+	private PushHub pushHub;
+
+	@Autowired
+	private SerializedResponseCache responseCache;
+
+	@Autowired
+	private FragmentCache fragmentCache;
+
+	@Autowired
+	private CoPurchaseRecommender coPurchaseRecommender;
+
+	@Autowired
+	private OrderEventPipeline orderEventPipeline;
+
+	@RequestMapping(value="/admission", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> admission(){
+		return admissionControlInterceptor.getMetrics();
+	}
+
+	@RequestMapping(value="/push", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> push(){
+		return pushHub.getMetrics();
+	}
+
+	@RequestMapping(value="/cache/responses", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> responses(){
+		return responseCache.getMetrics();
+	}
+
+	@RequestMapping(value="/cache/fragments", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> fragments(){
+		return fragmentCache.getMetrics();
+	}
+
+	@RequestMapping(value="/recommendations", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> recommendations(){
+		return coPurchaseRecommender.getMetrics();
+	}
+
+	@RequestMapping(value="/order-events", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> orderEvents(){
+		return orderEventPipeline.getMetrics();
+	}
+}
@@ -0,0 +1,33 @@
+package com.packt.webstore.controller;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import com.packt.webstore.exception.NotLeaderException;
+
+/**
+ * Catalog changes reaching a follower are answered with 503 and the URL
+ * the same request has on the leader, in the {@value #LEADER_HEADER}
+ * header and the error message, so clients can send it there.
+ */
+@ControllerAdvice
+public class NotLeaderAdvice {
+
+	public static final String LEADER_HEADER = "X-Catalog-Leader";
+
+	@ExceptionHandler(NotLeaderException.class)
+	public void handleNotLeader(NotLeaderException ex, HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		String location = ex.getLeader() + request.getServletPath()
+				+ (request.getPathInfo() == null ? "" : request.getPathInfo())
+				+ (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+		response.setHeader(LEADER_HEADER, location);
+		response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+				"This node is a catalog follower, send changes to " + location);
+	}
+}
@@ -8,6 +8,7 @@ import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.util.StringUtils;
@@ -21,12 +22,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.ModelAndView;
 
 import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.ProductQuery;
 import com.packt.webstore.exception.NoProductsFoundUnderCategoryException;
 import com.packt.webstore.exception.ProductNotFoundException;
+import com.packt.webstore.jfr.ImageUploadEvent;
 import com.packt.webstore.service.ProductService;
 
 @Controller
@@ -52,6 +56,10 @@ public class ProductController {
 		mav.setViewName("productNotFound");
 		return mav;
 	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason="Illegal request, please verify your payload")
+	public void handleClientErrors(Exception ex) { }
 	
 	@RequestMapping
 	public String list(Model model) {
@@ -67,6 +75,9 @@ public class ProductController {
 	
 	@RequestMapping("/{category}")
 	public String getProductsByCategory(Model model, @PathVariable("category") String productCategory){
+		if (!productService.isKnownCategory(productCategory)) {
+			throw new NoProductsFoundUnderCategoryException();
+		}
 		List<Product> products = productService.getProductsByCategory(productCategory);
 		if (products == null || products.isEmpty()) {
 			throw new NoProductsFoundUnderCategoryException();
@@ -76,7 +87,11 @@ public class ProductController {
 	}
 	@RequestMapping("/filter/{ByCriteria}")
 	public String getProductsByFilter(@MatrixVariable(pathVar="ByCriteria") Map<String, List<String>> filterParams, Model model){
-		model.addAttribute("products", productService.getProductsByfilter(filterParams));
+		if(filterParams.containsKey("price") || filterParams.containsKey("sort") || filterParams.containsKey("size")){
+			model.addAttribute("products", productService.getProducts(ProductQuery.fromCriteria(filterParams)));
+		}else{
+			model.addAttribute("products", productService.getProductsByfilter(filterParams));
+		}
 		return "products";
 	}
 	
@@ -102,10 +117,17 @@ public class ProductController {
 		String rootDirectory = request.getSession().getServletContext().getRealPath("/");
 		
 		if(productImage != null && !productImage.isEmpty()){
+			ImageUploadEvent event = new ImageUploadEvent();
+			event.begin();
 			try{
 				File file = new File(rootDirectory+"\\WEB-INF\\resources\\images\\"+newProduct.getProductId()+"."+
 								productService.getFileExtension(fileName));
 				productImage.transferTo(file);
+				if (event.shouldCommit()) {
+					event.productId = newProduct.getProductId();
+					event.size = productImage.getSize();
+					event.commit();
+				}
 			} catch( Exception e){
 				throw new RuntimeException("Product Image saving failed!", e);
 			}
@@ -0,0 +1,54 @@
+package com.packt.webstore.controller;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.packt.webstore.domain.CatalogChange;
+import com.packt.webstore.feed.ProductFeed;
+
+@Controller
+@RequestMapping(value="/feed")
+public class ProductFeedController {
+
+	@Autowired
+	private ProductFeed productFeed;
+
+	/**
+	 * The whole catalog, or with {@code since} the changes after that
+	 * sequence, as XML or as JSON lines ({@code format=jsonl}). The body has
+	 * no length and is flushed as it is written, so it goes out chunked; the
+	 * sequence to pass as {@code since} next time is in the
+	 * {@code X-Catalog-Sequence} header.
+	 */
+	@RequestMapping(value="/products", method = RequestMethod.GET)
+	public void products(@RequestParam(value="format", defaultValue="xml") String format,
+			@RequestParam(value="since", required=false) Long since, HttpServletResponse response) throws IOException{
+		ProductFeed.Format feedFormat = ProductFeed.Format.of(format);
+		long sequence = productFeed.getSequence();
+		List<CatalogChange> firstChanges = since == null ? null : productFeed.firstChanges(since);
+
+		response.setContentType(feedFormat.getContentType());
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("X-Catalog-Sequence", String.valueOf(sequence));
+		if (since == null) {
+			productFeed.writeCatalog(feedFormat, sequence, response.getOutputStream());
+		} else {
+			productFeed.writeChanges(feedFormat, since, sequence, firstChanges, response.getOutputStream());
+		}
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason="Unknown feed format, use xml or jsonl")
+	public void handleClientErrors(Exception ex) { }
+}
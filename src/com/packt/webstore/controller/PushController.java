@@ -0,0 +1,66 @@
+package com.packt.webstore.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import com.packt.webstore.identity.CartIdentity;
+import com.packt.webstore.push.PushHub;
+
+@Controller
+@RequestMapping(value="/push")
+public class PushController {
+
+	private static final int MAX_PRODUCTS = 100;
+
+	@Autowired
+	private PushHub pushHub;
+
+	@Autowired
+	private CartIdentity cartIdentity;
+
+	/**
+	 * Server-Sent Event stream of the visitor's cart ({@code cart} events)
+	 * and of the stock of the listed products ({@code stock} events). The
+	 * request is parked, not served by a thread, until the client leaves or
+	 * the stream times out, after which the browser reconnects.
+	 */
+	@RequestMapping(value="/events", method = RequestMethod.GET)
+	public void events(@RequestParam(value="products", required=false) List<String> products,
+			HttpServletRequest request, HttpServletResponse response){
+		List<String> productIds = new ArrayList<String>();
+		if (products != null) {
+			for (String productId : products) {
+				if (!productId.trim().isEmpty() && !productIds.contains(productId.trim())) {
+					productIds.add(productId.trim());
+				}
+			}
+		}
+		if (productIds.size() > MAX_PRODUCTS) {
+			throw new IllegalArgumentException("At most " + MAX_PRODUCTS + " products can be watched per stream");
+		}
+		if (!request.isAsyncSupported()) {
+			throw new IllegalStateException("Event streams need async support on the servlet and its filters");
+		}
+		String cartId = cartIdentity.existingCartId(request);
+
+		response.setContentType("text/event-stream");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		AsyncContext context = request.startAsync(request, response);
+		if (!pushHub.subscribe(context, cartId, productIds)) {
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			response.setHeader("Retry-After", "30");
+			context.complete();
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.packt.webstore.controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.packt.webstore.analytics.CoPurchaseRecommender;
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.service.ProductService;
+
+@Controller
+@RequestMapping(value="/recommendations")
+public class RecommendationController {
+
+	@Autowired
+	private CoPurchaseRecommender coPurchaseRecommender;
+	
+	@Autowired
+	private ProductService productService;
+	
+	@RequestMapping(value="/product", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> boughtTogether(@RequestParam("id") String productId,
+			@RequestParam(value="limit", defaultValue="4") int limit){
+		List<Product> products = new ArrayList<Product>();
+		for (String recommended : coPurchaseRecommender.getRecommendations(productId, limit)) {
+			products.add(productService.getProductById(recommended));
+		}
+		Map<String, Object> recommendations = new LinkedHashMap<String, Object>();
+		recommendations.put("productId", productId);
+		recommendations.put("boughtTogether", products);
+		return recommendations;
+	}
+}
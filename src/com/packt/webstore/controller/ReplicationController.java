@@ -0,0 +1,46 @@
+package com.packt.webstore.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.packt.webstore.cluster.CatalogReplicator;
+import com.packt.webstore.domain.CatalogChangeBatch;
+import com.packt.webstore.domain.CatalogSnapshot;
+import com.packt.webstore.domain.ReplicationStatus;
+import com.packt.webstore.domain.repository.impl.OutMemoryProductRepository;
+
+@Controller
+@RequestMapping(value="/replication")
+public class ReplicationController {
+
+	@Autowired
+	@Qualifier("OutMemory")
+	private OutMemoryProductRepository productRepository;
+	
+	@Autowired
+	private CatalogReplicator catalogReplicator;
+	
+	@RequestMapping(value="/snapshot", method = RequestMethod.GET,
+			produces = {"application/json", "application/x-jackson-smile"})
+	public @ResponseBody CatalogSnapshot snapshot(){
+		return productRepository.getSnapshot();
+	}
+	
+	@RequestMapping(value="/log", method = RequestMethod.GET,
+			produces = {"application/json", "application/x-jackson-smile"})
+	public @ResponseBody CatalogChangeBatch log(@RequestParam("since") long since,
+			@RequestParam(value="max", defaultValue="1000") int max){
+		long leaderSequence = productRepository.getChangeLog().getLastSequence();
+		return new CatalogChangeBatch(leaderSequence, productRepository.getChangeLog().getChangesSince(since, max));
+	}
+	
+	@RequestMapping(value="/status", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody ReplicationStatus status(){
+		return catalogReplicator.getStatus();
+	}
+}
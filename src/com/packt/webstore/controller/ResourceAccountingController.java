@@ -0,0 +1,35 @@
+package com.packt.webstore.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.packt.webstore.interceptor.ResourceAccountingInterceptor;
+
+@Controller
+@RequestMapping(value="/products/admin/accounting")
+public class ResourceAccountingController {
+
+	@Autowired
+	private ResourceAccountingInterceptor resourceAccountingInterceptor;
+	
+	@RequestMapping(value="/usage", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> usage(){
+		Map<String, Object> usage = new LinkedHashMap<String, Object>();
+		usage.put("settings", resourceAccountingInterceptor.getSettings());
+		usage.put("handlers", resourceAccountingInterceptor.getUsage());
+		return usage;
+	}
+	
+	@RequestMapping(value="/samples", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> samples(){
+		Map<String, Object> samples = new LinkedHashMap<String, Object>();
+		samples.put("samples", resourceAccountingInterceptor.getSampledRequests());
+		return samples;
+	}
+}
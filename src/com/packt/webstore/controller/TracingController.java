@@ -0,0 +1,35 @@
+package com.packt.webstore.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.packt.webstore.tracing.TraceSpan;
+import com.packt.webstore.tracing.Tracer;
+
+@Controller
+@RequestMapping(value="/products/admin/tracing")
+public class TracingController {
+
+	@Autowired
+	private Tracer tracer;
+	
+	@RequestMapping(value="/status", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody Map<String, Object> status(){
+		return tracer.getStatus();
+	}
+	
+	/**
+	 * Recently finished traces, newest first, in the shape of Zipkin's
+	 * {@code /api/v2/traces}.
+	 */
+	@RequestMapping(value="/traces", method = RequestMethod.GET, produces = "application/json")
+	public @ResponseBody List<List<TraceSpan>> traces(){
+		return tracer.getRecentTraces();
+	}
+}
@@ -0,0 +1,16 @@
+package com.packt.webstore.converter;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+public class MappingJackson2SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+	public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+	public MappingJackson2SmileHttpMessageConverter() {
+		super(new ObjectMapper(new SmileFactory()), SMILE);
+	}
+}
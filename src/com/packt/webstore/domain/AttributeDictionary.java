@@ -0,0 +1,121 @@
+package com.packt.webstore.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Interned values of a low cardinality product attribute. Every spelling of
+ * a value that only differs in case resolves to the same small int id, so
+ * products are matched by comparing ids and every product shares the same
+ * String instance for a given spelling. Reads never lock; new values are
+ * published by replacing the tables. Only catalog writes register values,
+ * so request data can never grow a dictionary.
+ */
+public final class AttributeDictionary {
+
+	public static final int UNKNOWN = -1;
+
+	public static final AttributeDictionary CATEGORIES = new AttributeDictionary();
+	public static final AttributeDictionary MANUFACTURERS = new AttributeDictionary();
+
+	private volatile Map<String, Integer> ids = new HashMap<String, Integer>();
+	private volatile Map<String, String> spellings = new HashMap<String, String>();
+	private volatile List<String> values = new ArrayList<String>();
+
+	/**
+	 * Id of the value regardless of case, or {@link #UNKNOWN} when no catalog
+	 * product has ever used it.
+	 */
+	public int idOf(String value) {
+		if (value == null) {
+			return UNKNOWN;
+		}
+		Integer id = ids.get(fold(value));
+		return id == null ? UNKNOWN : id;
+	}
+
+	public int[] idsOf(Collection<String> values) {
+		int[] found = new int[values.size()];
+		int count = 0;
+		for (String value : values) {
+			int id = idOf(value);
+			if (id != UNKNOWN)
+				found[count++] = id;
+		}
+		return count == found.length ? found : Arrays.copyOf(found, count);
+	}
+
+	public boolean contains(String value) {
+		return idOf(value) != UNKNOWN;
+	}
+
+	/**
+	 * The shared instance of the spelling if it is registered, else the
+	 * value itself. Never registers anything.
+	 */
+	public String shared(String value) {
+		if (value == null) {
+			return null;
+		}
+		String spelling = spellings.get(value);
+		return spelling == null ? value : spelling;
+	}
+
+	/**
+	 * Registers the value if needed and returns the shared instance of its
+	 * spelling.
+	 */
+	public String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		String spelling = spellings.get(value);
+		if (spelling != null) {
+			return spelling;
+		}
+		synchronized (this) {
+			spelling = spellings.get(value);
+			if (spelling != null) {
+				return spelling;
+			}
+			String folded = fold(value);
+			if (!ids.containsKey(folded)) {
+				Map<String, Integer> grownIds = new HashMap<String, Integer>(ids);
+				List<String> grownValues = new ArrayList<String>(values);
+				grownIds.put(folded, grownValues.size());
+				grownValues.add(value);
+				values = grownValues;
+				ids = grownIds;
+			}
+			Map<String, String> grownSpellings = new HashMap<String, String>(spellings);
+			grownSpellings.put(value, value);
+			spellings = grownSpellings;
+			return value;
+		}
+	}
+
+	/**
+	 * The first spelling registered for the id.
+	 */
+	public String valueOf(int id) {
+		return id == UNKNOWN ? null : values.get(id);
+	}
+
+	public List<String> getValues() {
+		return Collections.unmodifiableList(values);
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	private static String fold(String value) {
+		return value.toLowerCase(Locale.ROOT);
+	}
+}
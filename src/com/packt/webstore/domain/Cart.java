@@ -1,16 +1,16 @@
 package com.packt.webstore.domain;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Cart {
 	private String cartId;
 	private Map<String, CartItem> cartItems;
-	private BigDecimal grandTotal;
+	private volatile BigDecimal grandTotal;
 
 	public Cart() {
-		setCartItems(new HashMap<String, CartItem>());
+		setCartItems(new ConcurrentHashMap<String, CartItem>());
 		setGrandTotal(new BigDecimal(0));
 	}
 
@@ -32,7 +32,8 @@ public class Cart {
 	}
 
 	public void setCartItems(Map<String, CartItem> cartItems) {
-		this.cartItems = cartItems;
+		this.cartItems = cartItems instanceof ConcurrentHashMap || cartItems == null ? cartItems
+				: new ConcurrentHashMap<String, CartItem>(cartItems);
 	}
 
 	public BigDecimal getGrandTotal() {
@@ -43,7 +44,7 @@ public class Cart {
 		this.grandTotal = grandTotal;
 	}
 
-	public void addCartItem(CartItem item) {
+	public synchronized void addCartItem(CartItem item) {
 		String productId = item.getProduct().getProductId();
 		if (cartItems.containsKey(productId)) {
 			CartItem existingCartItem = cartItems.get(productId);
@@ -57,16 +58,36 @@ public class Cart {
 		updateGrandTotal();
 	}
 	
-	public void removeCartItem(CartItem item) {
+	public synchronized void removeCartItem(CartItem item) {
 		String productId = item.getProduct().getProductId();
 		cartItems.remove(productId);
 		updateGrandTotal();
 	}
 
+	/**
+	 * Points the line for this product at its new version and reprices it,
+	 * or drops the line if the product was discontinued. Returns false if
+	 * the cart does not hold the product.
+	 */
+	public synchronized boolean replaceProduct(Product product) {
+		CartItem item = cartItems.get(product.getProductId());
+		if (item == null) {
+			return false;
+		}
+		if (product.isDiscontinued()) {
+			cartItems.remove(product.getProductId());
+		} else {
+			item.setProduct(product);
+		}
+		updateGrandTotal();
+		return true;
+	}
+
 	private void updateGrandTotal() {
-		grandTotal = new BigDecimal(0);
+		BigDecimal total = new BigDecimal(0);
 		for (CartItem item : cartItems.values())
-			grandTotal = grandTotal.add(item.getTotalPrice());
+			total = total.add(item.getTotalPrice());
+		grandTotal = total;
 	}
 
 	@Override
@@ -45,6 +45,8 @@ public class CartItem {
 	}
 	
 	private void updateTotalPrice() {
+		if (this.product == null)
+			return;
 		totalPrice = this.product.getUnitPrice().multiply(new BigDecimal(this.quantity));
 		
 	}
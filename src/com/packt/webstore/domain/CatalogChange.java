@@ -0,0 +1,95 @@
+package com.packt.webstore.domain;
+
+public class CatalogChange {
+
+	public static final String PRODUCT_ADDED = "PRODUCT_ADDED";
+	public static final String STOCK_UPDATED = "STOCK_UPDATED";
+	public static final String PRODUCT_UPDATED = "PRODUCT_UPDATED";
+
+	private long sequence;
+	private long timestamp;
+	private String type;
+	private String productId;
+	private long unitsInStock;
+	private Product product;
+
+	public CatalogChange() {
+		super();
+	}
+
+	public static CatalogChange productAdded(Product product) {
+		CatalogChange change = new CatalogChange();
+		change.setType(PRODUCT_ADDED);
+		change.setProductId(product.getProductId());
+		change.setUnitsInStock(product.getUnitsInStock());
+		change.setProduct(product);
+		return change;
+	}
+
+	public static CatalogChange productUpdated(Product product) {
+		CatalogChange change = productAdded(product);
+		change.setType(PRODUCT_UPDATED);
+		return change;
+	}
+
+	public static CatalogChange stockUpdated(String productId, long unitsInStock) {
+		CatalogChange change = new CatalogChange();
+		change.setType(STOCK_UPDATED);
+		change.setProductId(productId);
+		change.setUnitsInStock(unitsInStock);
+		return change;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public void setProductId(String productId) {
+		this.productId = productId;
+	}
+
+	public long getUnitsInStock() {
+		return unitsInStock;
+	}
+
+	public void setUnitsInStock(long unitsInStock) {
+		this.unitsInStock = unitsInStock;
+	}
+
+	public Product getProduct() {
+		return product;
+	}
+
+	public void setProduct(Product product) {
+		this.product = product;
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogChange [sequence=" + sequence + ", type=" + type + ", productId=" + productId + "]";
+	}
+}
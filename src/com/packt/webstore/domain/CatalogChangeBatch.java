@@ -0,0 +1,34 @@
+package com.packt.webstore.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CatalogChangeBatch {
+	private long leaderSequence;
+	private List<CatalogChange> changes;
+
+	public CatalogChangeBatch() {
+		setChanges(new ArrayList<CatalogChange>());
+	}
+
+	public CatalogChangeBatch(long leaderSequence, List<CatalogChange> changes) {
+		this.setLeaderSequence(leaderSequence);
+		this.setChanges(changes);
+	}
+
+	public long getLeaderSequence() {
+		return leaderSequence;
+	}
+
+	public void setLeaderSequence(long leaderSequence) {
+		this.leaderSequence = leaderSequence;
+	}
+
+	public List<CatalogChange> getChanges() {
+		return changes;
+	}
+
+	public void setChanges(List<CatalogChange> changes) {
+		this.changes = changes;
+	}
+}
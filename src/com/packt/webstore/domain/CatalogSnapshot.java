@@ -0,0 +1,34 @@
+package com.packt.webstore.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CatalogSnapshot {
+	private long sequence;
+	private List<Product> products;
+
+	public CatalogSnapshot() {
+		setProducts(new ArrayList<Product>());
+	}
+
+	public CatalogSnapshot(long sequence, List<Product> products) {
+		this.setSequence(sequence);
+		this.setProducts(products);
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	public List<Product> getProducts() {
+		return products;
+	}
+
+	public void setProducts(List<Product> products) {
+		this.products = products;
+	}
+}
@@ -0,0 +1,48 @@
+package com.packt.webstore.domain;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompactCart {
+	private String cartId;
+	private List<CompactCartItem> items;
+	private BigDecimal grandTotal;
+
+	public CompactCart() {
+		setItems(new ArrayList<CompactCartItem>());
+	}
+
+	public CompactCart(Cart cart) {
+		this();
+		this.setCartId(cart.getCartId());
+		this.setGrandTotal(cart.getGrandTotal());
+		for (CartItem item : cart.getCartItems().values()) {
+			items.add(new CompactCartItem(item));
+		}
+	}
+
+	public String getCartId() {
+		return cartId;
+	}
+
+	public void setCartId(String cartId) {
+		this.cartId = cartId;
+	}
+
+	public List<CompactCartItem> getItems() {
+		return items;
+	}
+
+	public void setItems(List<CompactCartItem> items) {
+		this.items = items;
+	}
+
+	public BigDecimal getGrandTotal() {
+		return grandTotal;
+	}
+
+	public void setGrandTotal(BigDecimal grandTotal) {
+		this.grandTotal = grandTotal;
+	}
+}
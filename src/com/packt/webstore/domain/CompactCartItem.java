@@ -0,0 +1,63 @@
+package com.packt.webstore.domain;
+
+import java.math.BigDecimal;
+
+public class CompactCartItem {
+	private String productId;
+	private String name;
+	private BigDecimal unitPrice;
+	private int quantity;
+	private BigDecimal totalPrice;
+
+	public CompactCartItem() {
+
+	}
+
+	public CompactCartItem(CartItem item) {
+		this.setProductId(item.getProduct().getProductId());
+		this.setName(item.getProduct().getName());
+		this.setUnitPrice(item.getProduct().getUnitPrice());
+		this.setQuantity(item.getQuantity());
+		this.setTotalPrice(item.getTotalPrice());
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public void setProductId(String productId) {
+		this.productId = productId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public BigDecimal getUnitPrice() {
+		return unitPrice;
+	}
+
+	public void setUnitPrice(BigDecimal unitPrice) {
+		this.unitPrice = unitPrice;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+
+	public BigDecimal getTotalPrice() {
+		return totalPrice;
+	}
+
+	public void setTotalPrice(BigDecimal totalPrice) {
+		this.totalPrice = totalPrice;
+	}
+}
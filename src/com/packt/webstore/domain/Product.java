@@ -21,6 +21,8 @@ public class Product {
 	private boolean discontinued;
 	private String condition;
 	private String imageSource;
+	private int manufacturerId = AttributeDictionary.UNKNOWN;
+	private int categoryId = AttributeDictionary.UNKNOWN;
 	
 	@JsonIgnore
 	private MultipartFile productImage;
@@ -35,6 +37,22 @@ public class Product {
 		this.setUnitPrice(unitPrice);
 	}
 
+	public Product(Product other) {
+		this.productId = other.productId;
+		this.name = other.name;
+		this.unitPrice = other.unitPrice;
+		this.description = other.description;
+		this.manufacturer = other.manufacturer;
+		this.category = other.category;
+		this.manufacturerId = other.manufacturerId;
+		this.categoryId = other.categoryId;
+		this.unitsInStock = other.unitsInStock;
+		this.unitsInOrder = other.unitsInOrder;
+		this.discontinued = other.discontinued;
+		this.condition = other.condition;
+		this.imageSource = other.imageSource;
+	}
+
 	// add setters and getters for all the fields here
 	
 	
@@ -89,7 +107,17 @@ public class Product {
 	}
 
 	public void setManufacturer(String manufacturer) {
-		this.manufacturer = manufacturer;
+		this.manufacturer = AttributeDictionary.MANUFACTURERS.shared(manufacturer);
+		this.manufacturerId = AttributeDictionary.MANUFACTURERS.idOf(manufacturer);
+	}
+
+	/**
+	 * Id of the manufacturer in {@link AttributeDictionary#MANUFACTURERS}.
+	 */
+	@XmlTransient
+	@com.fasterxml.jackson.annotation.JsonIgnore
+	public int getManufacturerId() {
+		return manufacturerId;
 	}
 
 	public String getCategory() {
@@ -97,7 +125,29 @@ public class Product {
 	}
 
 	public void setCategory(String category) {
-		this.category = category;
+		this.category = AttributeDictionary.CATEGORIES.shared(category);
+		this.categoryId = AttributeDictionary.CATEGORIES.idOf(category);
+	}
+
+	/**
+	 * Id of the category in {@link AttributeDictionary#CATEGORIES}.
+	 */
+	@XmlTransient
+	@com.fasterxml.jackson.annotation.JsonIgnore
+	public int getCategoryId() {
+		return categoryId;
+	}
+
+	/**
+	 * Registers the category and manufacturer in their dictionaries. Only
+	 * catalog writes call this; the setters just look values up, so products
+	 * bound from requests never grow the dictionaries.
+	 */
+	public void internAttributes() {
+		this.manufacturer = AttributeDictionary.MANUFACTURERS.intern(manufacturer);
+		this.manufacturerId = AttributeDictionary.MANUFACTURERS.idOf(manufacturer);
+		this.category = AttributeDictionary.CATEGORIES.intern(category);
+		this.categoryId = AttributeDictionary.CATEGORIES.idOf(category);
 	}
 
 	public long getUnitsInStock() {
@@ -157,6 +207,7 @@ public class Product {
 	}
 	
 	@XmlTransient
+	@com.fasterxml.jackson.annotation.JsonIgnore
 	public MultipartFile getProductImage() {
 		return productImage;
 	}
@@ -0,0 +1,232 @@
+package com.packt.webstore.domain;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ProductQuery {
+
+	public static final String SORT_BY_PRICE = "price";
+	public static final String SORT_BY_NAME = "name";
+
+	private BigDecimal minPrice;
+	private BigDecimal maxPrice;
+	private Set<String> brands = new HashSet<String>();
+	private Set<String> categories = new HashSet<String>();
+	private String sortBy;
+	private boolean descending;
+	private int offset;
+	private int limit = Integer.MAX_VALUE;
+	private int[] brandIds;
+	private int[] categoryIds;
+
+	/**
+	 * Builds a query from the matrix variables of the filter route, e.g.
+	 * {@code ;price=100-500;brand=Google;sort=price;order=desc;page=0;size=10}.
+	 * A price range may leave either end open ({@code 100-} or {@code -500}).
+	 * Malformed or negative values, and pages past the int range, are
+	 * refused with an {@link IllegalArgumentException}.
+	 */
+	public static ProductQuery fromCriteria(Map<String, List<String>> criteria) {
+		ProductQuery query = new ProductQuery();
+		if (criteria.containsKey("price")) {
+			String range = criteria.get("price").get(0);
+			int dash = range.indexOf('-');
+			if (dash < 0) {
+				query.setMinPrice(price(range));
+				query.setMaxPrice(price(range));
+			} else {
+				if (dash > 0)
+					query.setMinPrice(price(range.substring(0, dash)));
+				if (dash < range.length() - 1)
+					query.setMaxPrice(price(range.substring(dash + 1)));
+			}
+			if (query.getMinPrice() != null && query.getMaxPrice() != null
+					&& query.getMinPrice().compareTo(query.getMaxPrice()) > 0) {
+				throw new IllegalArgumentException("Price range " + range + " is empty");
+			}
+		}
+		if (criteria.containsKey("brand"))
+			query.getBrands().addAll(lowerCase(criteria.get("brand")));
+		if (criteria.containsKey("category"))
+			query.getCategories().addAll(lowerCase(criteria.get("category")));
+		if (criteria.containsKey("sort")) {
+			String sortBy = criteria.get("sort").get(0);
+			if (!SORT_BY_PRICE.equals(sortBy) && !SORT_BY_NAME.equals(sortBy)) {
+				throw new IllegalArgumentException("Products can be sorted by price or name, not " + sortBy);
+			}
+			query.setSortBy(sortBy);
+		}
+		if (criteria.containsKey("order"))
+			query.setDescending("desc".equalsIgnoreCase(criteria.get("order").get(0)));
+		if (criteria.containsKey("size")) {
+			int size = count("size", criteria.get("size").get(0));
+			if (size == 0) {
+				throw new IllegalArgumentException("Page size must be positive");
+			}
+			query.setLimit(size);
+			if (criteria.containsKey("page")) {
+				int page = count("page", criteria.get("page").get(0));
+				try {
+					query.setOffset(Math.multiplyExact(page, size));
+				} catch (ArithmeticException e) {
+					throw new IllegalArgumentException("Page " + page + " of size " + size + " is out of range");
+				}
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Brand and category names are resolved to dictionary ids on first use,
+	 * after that a product is matched by comparing ints.
+	 */
+	public boolean matches(Product product) {
+		if (!brands.isEmpty() && !contains(getBrandIds(), product.getManufacturerId()))
+			return false;
+		if (!categories.isEmpty() && !contains(getCategoryIds(), product.getCategoryId()))
+			return false;
+		return matchesPrice(product.getUnitPrice());
+	}
+
+	public int[] getBrandIds() {
+		if (brandIds == null)
+			brandIds = AttributeDictionary.MANUFACTURERS.idsOf(brands);
+		return brandIds;
+	}
+
+	public int[] getCategoryIds() {
+		if (categoryIds == null)
+			categoryIds = AttributeDictionary.CATEGORIES.idsOf(categories);
+		return categoryIds;
+	}
+
+	public static boolean contains(int[] ids, int id) {
+		for (int candidate : ids) {
+			if (candidate == id)
+				return true;
+		}
+		return false;
+	}
+
+	public boolean matchesPrice(BigDecimal price) {
+		if (minPrice == null && maxPrice == null)
+			return true;
+		if (price == null)
+			return false;
+		return (minPrice == null || price.compareTo(minPrice) >= 0)
+				&& (maxPrice == null || price.compareTo(maxPrice) <= 0);
+	}
+
+	public boolean hasPriceRange() {
+		return minPrice != null || maxPrice != null;
+	}
+
+	@Override
+	public String toString() {
+		return "ProductQuery [price=" + (minPrice == null ? "" : minPrice) + "-" + (maxPrice == null ? "" : maxPrice)
+				+ ", brands=" + brands + ", categories=" + categories + ", sort=" + sortBy
+				+ (descending ? " desc" : "") + ", offset=" + offset + ", limit=" + limit + "]";
+	}
+
+	private static BigDecimal price(String value) {
+		BigDecimal price;
+		try {
+			price = new BigDecimal(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Price must be a number, was " + value);
+		}
+		if (price.signum() < 0) {
+			throw new IllegalArgumentException("Price can not be negative, was " + value);
+		}
+		return price;
+	}
+
+	private static int count(String name, String value) {
+		int count;
+		try {
+			count = Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be a whole number, was " + value);
+		}
+		if (count < 0) {
+			throw new IllegalArgumentException(name + " can not be negative, was " + value);
+		}
+		return count;
+	}
+
+	private static Set<String> lowerCase(List<String> values) {
+		Set<String> lowerCase = new HashSet<String>();
+		for (String value : values)
+			lowerCase.add(value.toLowerCase());
+		return lowerCase;
+	}
+
+	public BigDecimal getMinPrice() {
+		return minPrice;
+	}
+
+	public void setMinPrice(BigDecimal minPrice) {
+		this.minPrice = minPrice;
+	}
+
+	public BigDecimal getMaxPrice() {
+		return maxPrice;
+	}
+
+	public void setMaxPrice(BigDecimal maxPrice) {
+		this.maxPrice = maxPrice;
+	}
+
+	public Set<String> getBrands() {
+		return brands;
+	}
+
+	public void setBrands(Set<String> brands) {
+		this.brands = brands;
+		this.brandIds = null;
+	}
+
+	public Set<String> getCategories() {
+		return categories;
+	}
+
+	public void setCategories(Set<String> categories) {
+		this.categories = categories;
+		this.categoryIds = null;
+	}
+
+	public String getSortBy() {
+		return sortBy;
+	}
+
+	public void setSortBy(String sortBy) {
+		this.sortBy = sortBy;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+
+	public void setDescending(boolean descending) {
+		this.descending = descending;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+}
@@ -0,0 +1,67 @@
+package com.packt.webstore.domain;
+
+public class ProductSales {
+	private String productId;
+	private String category;
+	private long unitsSold;
+	private double recentUnits;
+	private double velocityPerHour;
+	private long unitsInStock;
+	private Double hoursToStockOut;
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public void setProductId(String productId) {
+		this.productId = productId;
+	}
+
+	public String getCategory() {
+		return category;
+	}
+
+	public void setCategory(String category) {
+		this.category = category;
+	}
+
+	public long getUnitsSold() {
+		return unitsSold;
+	}
+
+	public void setUnitsSold(long unitsSold) {
+		this.unitsSold = unitsSold;
+	}
+
+	public double getRecentUnits() {
+		return recentUnits;
+	}
+
+	public void setRecentUnits(double recentUnits) {
+		this.recentUnits = recentUnits;
+	}
+
+	public double getVelocityPerHour() {
+		return velocityPerHour;
+	}
+
+	public void setVelocityPerHour(double velocityPerHour) {
+		this.velocityPerHour = velocityPerHour;
+	}
+
+	public long getUnitsInStock() {
+		return unitsInStock;
+	}
+
+	public void setUnitsInStock(long unitsInStock) {
+		this.unitsInStock = unitsInStock;
+	}
+
+	public Double getHoursToStockOut() {
+		return hoursToStockOut;
+	}
+
+	public void setHoursToStockOut(Double hoursToStockOut) {
+		this.hoursToStockOut = hoursToStockOut;
+	}
+}
@@ -0,0 +1,38 @@
+package com.packt.webstore.domain;
+
+public class PromoCampaign {
+	private final String name;
+	private final long validFrom;
+	private final long validUntil;
+
+	public PromoCampaign(String name, long validFrom, long validUntil) {
+		this.name = name;
+		this.validFrom = validFrom;
+		this.validUntil = validUntil;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getValidFrom() {
+		return validFrom;
+	}
+
+	public long getValidUntil() {
+		return validUntil;
+	}
+
+	public PromoRedemption checkWindow(long now) {
+		if (now < validFrom)
+			return PromoRedemption.NOT_YET_VALID;
+		if (now >= validUntil)
+			return PromoRedemption.EXPIRED;
+		return PromoRedemption.REDEEMED;
+	}
+
+	@Override
+	public String toString() {
+		return "PromoCampaign [name=" + name + ", validFrom=" + validFrom + ", validUntil=" + validUntil + "]";
+	}
+}
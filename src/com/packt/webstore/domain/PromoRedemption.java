@@ -0,0 +1,5 @@
+package com.packt.webstore.domain;
+
+public enum PromoRedemption {
+	REDEEMED, UNKNOWN, NOT_YET_VALID, EXPIRED, EXHAUSTED
+}
@@ -0,0 +1,58 @@
+package com.packt.webstore.domain;
+
+public class ReplicationStatus {
+	private String role;
+	private String leader;
+	private long appliedSequence;
+	private long leaderSequence;
+	private long lagChanges;
+	private long lagMillis;
+
+	public String getRole() {
+		return role;
+	}
+
+	public void setRole(String role) {
+		this.role = role;
+	}
+
+	public String getLeader() {
+		return leader;
+	}
+
+	public void setLeader(String leader) {
+		this.leader = leader;
+	}
+
+	public long getAppliedSequence() {
+		return appliedSequence;
+	}
+
+	public void setAppliedSequence(long appliedSequence) {
+		this.appliedSequence = appliedSequence;
+	}
+
+	public long getLeaderSequence() {
+		return leaderSequence;
+	}
+
+	public void setLeaderSequence(long leaderSequence) {
+		this.leaderSequence = leaderSequence;
+	}
+
+	public long getLagChanges() {
+		return lagChanges;
+	}
+
+	public void setLagChanges(long lagChanges) {
+		this.lagChanges = lagChanges;
+	}
+
+	public long getLagMillis() {
+		return lagMillis;
+	}
+
+	public void setLagMillis(long lagMillis) {
+		this.lagMillis = lagMillis;
+	}
+}
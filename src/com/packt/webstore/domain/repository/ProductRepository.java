@@ -1,15 +1,23 @@
 package com.packt.webstore.domain.repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.ProductQuery;
 
 public interface ProductRepository {
 	List<Product> getAllProducts();
 	List<Product> getProductsByCategory(String category);
 	Product getProductById(String productid);
 	Set<Product> getProductsByFiler(Map<String, List<String>> filterParams);
+	List<Product> getProducts(ProductQuery query);
 	void addProduct(Product product);
+	void updateStock(String productId, long unitsInStock);
+	long decreaseStock(String productId, long quantity);
+	Product updatePrice(String productId, BigDecimal unitPrice);
+	Product discontinue(String productId);
+	long getCatalogVersion();
 }
@@ -0,0 +1,100 @@
+package com.packt.webstore.domain.repository.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Which carts hold which products, kept up to date as carts are saved, so
+ * a product change finds its carts without scanning all of them. Each cart
+ * is re-indexed under one of a fixed set of locks, so two saves of the same
+ * cart cannot leave a product it holds out of the index. An entry can
+ * outlive the line it stands for; callers check the cart itself.
+ */
+class CartProductIndex {
+
+	private static final int STRIPES = 64;
+
+	private final ConcurrentMap<String, Set<String>> cartsByProduct = new ConcurrentHashMap<String, Set<String>>();
+	private final ConcurrentMap<String, Set<String>> productsByCart = new ConcurrentHashMap<String, Set<String>>();
+	private final Object[] locks = new Object[STRIPES];
+
+	CartProductIndex() {
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	void index(String cartId, Collection<String> productIds) {
+		Set<String> current = Collections.unmodifiableSet(new HashSet<String>(productIds));
+		synchronized (lockFor(cartId)) {
+			Set<String> previous = productsByCart.put(cartId, current);
+			for (String productId : current) {
+				if (previous == null || !previous.contains(productId)) {
+					cartsOf(productId).add(cartId);
+				}
+			}
+			if (previous != null) {
+				unlink(cartId, previous, current);
+			}
+		}
+	}
+
+	void remove(String cartId) {
+		synchronized (lockFor(cartId)) {
+			Set<String> previous = productsByCart.remove(cartId);
+			if (previous != null) {
+				unlink(cartId, previous, Collections.<String> emptySet());
+			}
+		}
+	}
+
+	List<String> cartsWith(String productId) {
+		Set<String> carts = cartsByProduct.get(productId);
+		return carts == null ? Collections.<String> emptyList() : new ArrayList<String>(carts);
+	}
+
+	int carts() {
+		return productsByCart.size();
+	}
+
+	int products() {
+		return cartsByProduct.size();
+	}
+
+	/**
+	 * Product sets are never removed once empty, so an add cannot race a
+	 * removal of the set it is adding to; there is one per product at most.
+	 */
+	private Set<String> cartsOf(String productId) {
+		Set<String> carts = cartsByProduct.get(productId);
+		if (carts == null) {
+			Set<String> created = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			carts = cartsByProduct.putIfAbsent(productId, created);
+			if (carts == null) {
+				carts = created;
+			}
+		}
+		return carts;
+	}
+
+	private void unlink(String cartId, Set<String> previous, Set<String> current) {
+		for (String productId : previous) {
+			if (!current.contains(productId)) {
+				Set<String> carts = cartsByProduct.get(productId);
+				if (carts != null) {
+					carts.remove(cartId);
+				}
+			}
+		}
+	}
+
+	private Object lockFor(String cartId) {
+		return locks[(cartId.hashCode() & 0x7fffffff) % STRIPES];
+	}
+}
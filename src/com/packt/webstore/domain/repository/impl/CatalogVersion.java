@@ -0,0 +1,201 @@
+package com.packt.webstore.domain.repository.impl;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.packt.webstore.domain.Product;
+
+/**
+ * Immutable, versioned view of the catalog. Products live in fixed size
+ * chunks, so a new version only copies the chunk table and the chunks it
+ * touches and shares everything else with the version it was built from.
+ * Products are only ever appended, which lets all versions of one lineage
+ * share a single append-only id index; a position at or beyond a version's
+ * size simply does not exist in that version. The ordered price and name
+ * indexes are persistent as well, so each version has its own.
+ */
+public final class CatalogVersion {
+
+	private static final int CHUNK_SHIFT = 5;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final long version;
+	private final Product[][] chunks;
+	private final int size;
+	private final ConcurrentMap<String, Integer> positions;
+	private final SortedIndex<BigDecimal> priceIndex;
+	private final SortedIndex<String> nameIndex;
+
+	private CatalogVersion(long version, Product[][] chunks, int size, ConcurrentMap<String, Integer> positions,
+			SortedIndex<BigDecimal> priceIndex, SortedIndex<String> nameIndex) {
+		this.version = version;
+		this.chunks = chunks;
+		this.size = size;
+		this.positions = positions;
+		this.priceIndex = priceIndex;
+		this.nameIndex = nameIndex;
+	}
+
+	public static CatalogVersion of(long version, Collection<Product> products) {
+		Builder builder = new CatalogVersion(version - 1, new Product[0][], 0,
+				new ConcurrentHashMap<String, Integer>(), SortedIndex.<BigDecimal> empty(),
+				SortedIndex.<String> empty()).toBuilder();
+		for (Product product : products) {
+			builder.add(product);
+		}
+		return builder.build();
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Product get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+		}
+		return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+	}
+
+	public Product get(String productId) {
+		return productId == null ? null : lookup(chunks, size, positions, productId);
+	}
+
+	/**
+	 * An abandoned batch can leave index entries behind, so a hit only counts
+	 * when the product at that position really carries the id.
+	 */
+	private static Product lookup(Product[][] chunks, int size, ConcurrentMap<String, Integer> positions, String productId) {
+		Integer position = positions.get(productId);
+		if (position == null || position >= size) {
+			return null;
+		}
+		Product product = chunks[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+		return productId.equals(product.getProductId()) ? product : null;
+	}
+
+	public List<Product> asList() {
+		return new ProductList();
+	}
+
+	SortedIndex<BigDecimal> getPriceIndex() {
+		return priceIndex;
+	}
+
+	SortedIndex<String> getNameIndex() {
+		return nameIndex;
+	}
+
+	static String nameKey(Product product) {
+		return product.getName() == null ? null : product.getName().toLowerCase(Locale.ROOT);
+	}
+
+	public Builder toBuilder() {
+		return new Builder(this);
+	}
+
+	private class ProductList extends AbstractList<Product> implements RandomAccess {
+		@Override
+		public Product get(int index) {
+			return CatalogVersion.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Collects a batch of changes for the next version. Not thread safe;
+	 * writers are expected to be serialized by the repository.
+	 */
+	public static final class Builder {
+		private final CatalogVersion base;
+		private Product[][] chunks;
+		private boolean[] copied;
+		private int size;
+		private SortedIndex<BigDecimal> priceIndex;
+		private SortedIndex<String> nameIndex;
+
+		private Builder(CatalogVersion base) {
+			this.base = base;
+			this.chunks = base.chunks.clone();
+			this.copied = new boolean[chunks.length];
+			this.size = base.size;
+			this.priceIndex = base.priceIndex;
+			this.nameIndex = base.nameIndex;
+		}
+
+		public Builder add(Product product) {
+			if (get(product.getProductId()) != null) {
+				throw new IllegalArgumentException("A product with the given id (" + product.getProductId() + ") already exists.");
+			}
+			int chunk = size >>> CHUNK_SHIFT;
+			if (chunk == chunks.length) {
+				chunks = Arrays.copyOf(chunks, Math.max(1, chunks.length * 2));
+				copied = Arrays.copyOf(copied, chunks.length);
+			}
+			if (chunks[chunk] == null) {
+				chunks[chunk] = new Product[CHUNK_SIZE];
+				copied[chunk] = true;
+			}
+			writableChunk(chunk)[size & CHUNK_MASK] = product;
+			base.positions.put(product.getProductId(), size);
+			size++;
+			priceIndex = priceIndex.insert(product.getUnitPrice(), product.getProductId());
+			nameIndex = nameIndex.insert(nameKey(product), product.getProductId());
+			return this;
+		}
+
+		public Builder replace(Product product) {
+			Product previous = get(product.getProductId());
+			if (previous == null) {
+				throw new IllegalArgumentException("No product with the given id (" + product.getProductId() + ") to replace.");
+			}
+			int position = base.positions.get(product.getProductId());
+			writableChunk(position >>> CHUNK_SHIFT)[position & CHUNK_MASK] = product;
+			if (!sameKey(previous.getUnitPrice(), product.getUnitPrice())) {
+				priceIndex = priceIndex.remove(previous.getUnitPrice(), product.getProductId())
+						.insert(product.getUnitPrice(), product.getProductId());
+			}
+			if (!sameKey(nameKey(previous), nameKey(product))) {
+				nameIndex = nameIndex.remove(nameKey(previous), product.getProductId())
+						.insert(nameKey(product), product.getProductId());
+			}
+			return this;
+		}
+
+		public Product get(String productId) {
+			return lookup(chunks, size, base.positions, productId);
+		}
+
+		public CatalogVersion build() {
+			return new CatalogVersion(base.version + 1, chunks, size, base.positions, priceIndex, nameIndex);
+		}
+
+		private static <K extends Comparable<K>> boolean sameKey(K a, K b) {
+			return a == null ? b == null : b != null && a.compareTo(b) == 0;
+		}
+
+		private Product[] writableChunk(int chunk) {
+			if (!copied[chunk]) {
+				chunks[chunk] = chunks[chunk].clone();
+				copied[chunk] = true;
+			}
+			return chunks[chunk];
+		}
+	}
+}
@@ -1,31 +1,32 @@
 package com.packt.webstore.domain.repository.impl;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
 
 import com.packt.webstore.domain.Cart;
 import com.packt.webstore.domain.repository.CartRepository;
 
 @Repository
+@Component(value = "InMemoryCart")
 public class InMemoryCartRepositoryImpl implements CartRepository {
 
-	private Map<String, Cart> listOfCarts;
+	private ConcurrentMap<String, Cart> listOfCarts;
 
 	public InMemoryCartRepositoryImpl() {
-		listOfCarts = new HashMap<String, Cart>();
+		listOfCarts = new ConcurrentHashMap<String, Cart>();
 	}
 
 	@Override
 	public Cart create(Cart cart) {
-		if (listOfCarts.keySet().contains(cart.getCartId())) {
+		if (listOfCarts.putIfAbsent(cart.getCartId(), cart) != null) {
 			throw new IllegalArgumentException(
 					String.format(
-							"Can not create a cart. A cart with the given id (%) already exists.",
+							"Can not create a cart. A cart with the given id (%s) already exists.",
 							cart.getCartId()));
 		}
-		listOfCarts.put(cart.getCartId(), cart);
 		return cart;
 	}
 
@@ -36,24 +37,22 @@ public class InMemoryCartRepositoryImpl implements CartRepository {
 
 	@Override
 	public void update(String cartId, Cart cart) {
-		if (!listOfCarts.keySet().contains(cartId)) {
+		if (listOfCarts.replace(cartId, cart) == null) {
 			throw new IllegalArgumentException(
 					String.format(
-							"Cannot update cart. Cart with the given id (%) does not exist.",
+							"Cannot update cart. Cart with the given id (%s) does not exist.",
 							cartId));
 		}
-		listOfCarts.put(cartId, cart);
 	}
 
 	@Override
 	public void delete(String cartId) {
-		if (!listOfCarts.keySet().contains(cartId)) {
+		if (listOfCarts.remove(cartId) == null) {
 			throw new IllegalArgumentException(
 					String.format(
-							"Cannot update cart. Cart with the given id (%) does not exist.",
+							"Cannot delete cart. Cart with the given id (%s) does not exist.",
 							cartId));
 		}
-		listOfCarts.remove(cartId);
 
 	}
 
@@ -2,6 +2,8 @@ package com.packt.webstore.domain.repository.impl;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -10,7 +12,9 @@ import java.util.Set;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
 
+import com.packt.webstore.domain.AttributeDictionary;
 import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.ProductQuery;
 import com.packt.webstore.domain.repository.ProductRepository;
 
 @Repository
@@ -18,6 +22,7 @@ import com.packt.webstore.domain.repository.ProductRepository;
 public class InMemoryProductRepository implements ProductRepository {
 
 	private List<Product> listOfProducts = new ArrayList<Product>();
+	private volatile long version = 1;
 
 	public InMemoryProductRepository() {
 
@@ -45,6 +50,9 @@ public class InMemoryProductRepository implements ProductRepository {
 		listOfProducts.add(iphone);
 		listOfProducts.add(laptop_dell);
 		listOfProducts.add(tablet_Nexus);
+		for (Product product : listOfProducts) {
+			product.internAttributes();
+		}
 	}
 
 	@Override
@@ -72,8 +80,11 @@ public class InMemoryProductRepository implements ProductRepository {
 	@Override
 	public List<Product> getProductsByCategory(String category) {
 		List<Product> productsByCategory = new ArrayList<Product>();
+		int categoryId = AttributeDictionary.CATEGORIES.idOf(category);
+		if (categoryId == AttributeDictionary.UNKNOWN)
+			return productsByCategory;
 		for (Product product : listOfProducts) {
-			if (category.equalsIgnoreCase(product.getCategory()))
+			if (product.getCategoryId() == categoryId)
 				productsByCategory.add(product);
 		}
 
@@ -89,19 +100,18 @@ public class InMemoryProductRepository implements ProductRepository {
 		Set<String> criterias = filterParams.keySet();
 		
 		if(criterias.contains("brand")){
-			for(String brandName: filterParams.get("brand")){
-				for(Product product: listOfProducts){
-					if(brandName.equalsIgnoreCase(product.getManufacturer())){
-						productsByBrand.add(product);
-					}
-					
-				}
+			int[] brandIds = AttributeDictionary.MANUFACTURERS.idsOf(filterParams.get("brand"));
+			for(Product product: listOfProducts){
+				if(ProductQuery.contains(brandIds, product.getManufacturerId()))
+					productsByBrand.add(product);
 			}
 		}
 		
 		if(criterias.contains("category")){
-			for(String categoryName: filterParams.get("category")){
-				productsByCategory.addAll(this.getProductsByCategory(categoryName));
+			int[] categoryIds = AttributeDictionary.CATEGORIES.idsOf(filterParams.get("category"));
+			for(Product product: listOfProducts){
+				if(ProductQuery.contains(categoryIds, product.getCategoryId()))
+					productsByCategory.add(product);
 			}
 		}
 		
@@ -111,7 +121,70 @@ public class InMemoryProductRepository implements ProductRepository {
 	}
 
 	@Override
-	public void addProduct(Product product) {
+	public List<Product> getProducts(final ProductQuery query) {
+		List<Product> matching = new ArrayList<Product>();
+		for (Product product : listOfProducts) {
+			if (query.matches(product))
+				matching.add(product);
+		}
+		if (query.getSortBy() != null) {
+			Collections.sort(matching, new Comparator<Product>() {
+				@Override
+				public int compare(Product a, Product b) {
+					int cmp = ProductQuery.SORT_BY_PRICE.equals(query.getSortBy())
+							? a.getUnitPrice().compareTo(b.getUnitPrice())
+							: a.getName().compareToIgnoreCase(b.getName());
+					return query.isDescending() ? -cmp : cmp;
+				}
+			});
+		}
+		int from = Math.min(query.getOffset(), matching.size());
+		int to = (int) Math.min((long) from + query.getLimit(), matching.size());
+		return new ArrayList<Product>(matching.subList(from, to));
+	}
+
+	@Override
+	public synchronized void addProduct(Product product) {
+		product.internAttributes();
 		listOfProducts.add(product);
+		version++;
+	}
+
+	@Override
+	public synchronized void updateStock(String productId, long unitsInStock) {
+		getProductById(productId).setUnitsInStock(unitsInStock);
+		version++;
+	}
+
+	@Override
+	public synchronized long decreaseStock(String productId, long quantity) {
+		Product product = getProductById(productId);
+		if (product.getUnitsInStock() < quantity) {
+			throw new IllegalArgumentException("Out of stock. Available units in stock is " + product.getUnitsInStock());
+		}
+		product.setUnitsInStock(product.getUnitsInStock() - quantity);
+		version++;
+		return product.getUnitsInStock();
+	}
+
+	@Override
+	public synchronized Product updatePrice(String productId, BigDecimal unitPrice) {
+		Product product = getProductById(productId);
+		product.setUnitPrice(unitPrice);
+		version++;
+		return product;
+	}
+
+	@Override
+	public synchronized Product discontinue(String productId) {
+		Product product = getProductById(productId);
+		product.setDiscontinued(true);
+		version++;
+		return product;
+	}
+
+	@Override
+	public long getCatalogVersion() {
+		return version;
 	}
 }
@@ -0,0 +1,293 @@
+package com.packt.webstore.domain.repository.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.packt.webstore.domain.AttributeDictionary;
+
+/**
+ * Column types for {@link OffHeapProductRepository}. Rows are addressed by
+ * int row number, values live in direct buffers allocated in fixed size
+ * segments so a column can grow past the 2GB limit of a single buffer;
+ * only the first segment, which starts small, is ever copied. Writers must
+ * be serialized; readers only touch rows below the published row count.
+ */
+final class OffHeapColumns {
+
+	static final int SEGMENT_SHIFT = 16;
+	static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+	static final int SEGMENT_MASK = SEGMENT_ROWS - 1;
+	static final int FIRST_SEGMENT_ROWS = 1024;
+
+	private OffHeapColumns() {
+	}
+
+	static class FixedWidthColumn {
+		private final int width;
+		private volatile ByteBuffer[] segments = new ByteBuffer[0];
+
+		FixedWidthColumn(int width) {
+			this.width = width;
+		}
+
+		long getLong(int row) {
+			return segment(row).getLong(offset(row));
+		}
+
+		int getInt(int row) {
+			return segment(row).getInt(offset(row));
+		}
+
+		byte getByte(int row) {
+			return segment(row).get(offset(row));
+		}
+
+		void putLong(int row, long value) {
+			writable(row).putLong(offset(row), value);
+		}
+
+		void putInt(int row, int value) {
+			writable(row).putInt(offset(row), value);
+		}
+
+		void putByte(int row, byte value) {
+			writable(row).put(offset(row), value);
+		}
+
+		long offHeapBytes() {
+			long bytes = 0;
+			for (ByteBuffer segment : segments) {
+				bytes += segment.capacity();
+			}
+			return bytes;
+		}
+
+		private ByteBuffer segment(int row) {
+			return segments[row >>> SEGMENT_SHIFT];
+		}
+
+		private int offset(int row) {
+			return (row & SEGMENT_MASK) * width;
+		}
+
+		/**
+		 * The first segment starts at {@value #FIRST_SEGMENT_ROWS} rows and
+		 * is copied into one twice its size until it is full size; every
+		 * later segment is allocated full size.
+		 */
+		private ByteBuffer writable(int row) {
+			int segment = row >>> SEGMENT_SHIFT;
+			if (segment >= segments.length) {
+				ByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+				for (int i = segments.length; i <= segment; i++) {
+					grown[i] = ByteBuffer.allocateDirect((i == 0 ? FIRST_SEGMENT_ROWS : SEGMENT_ROWS) * width);
+				}
+				segments = grown;
+			}
+			ByteBuffer current = segments[segment];
+			int end = offset(row) + width;
+			if (end > current.capacity()) {
+				int capacity = current.capacity();
+				while (capacity < end) {
+					capacity <<= 1;
+				}
+				ByteBuffer bigger = ByteBuffer.allocateDirect(capacity);
+				ByteBuffer copied = current.duplicate();
+				copied.clear();
+				bigger.put(copied);
+				bigger.clear();
+				ByteBuffer[] replaced = segments.clone();
+				replaced[segment] = bigger;
+				segments = replaced;
+				current = bigger;
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * UTF-8 strings packed into direct pages; each row stores the page,
+	 * offset and length of its bytes. The first page holds 4KB and each
+	 * new page doubles the last one up to 16MB, so a small column only
+	 * takes what it needs.
+	 */
+	static class StringColumn {
+		private static final int FIRST_PAGE_SIZE = 4 * 1024;
+		private static final int MAX_PAGE_SIZE = 16 * 1024 * 1024;
+		private static final int NULL_LENGTH = -1;
+
+		private final FixedWidthColumn pages = new FixedWidthColumn(4);
+		private final FixedWidthColumn offsets = new FixedWidthColumn(4);
+		private final FixedWidthColumn lengths = new FixedWidthColumn(4);
+		private volatile ByteBuffer[] data = new ByteBuffer[0];
+		private int writePosition;
+		private long pageBytes;
+
+		String get(int row) {
+			int length = lengths.getInt(row);
+			if (length == NULL_LENGTH) {
+				return null;
+			}
+			ByteBuffer page = data[pages.getInt(row)].duplicate();
+			page.position(offsets.getInt(row));
+			byte[] bytes = new byte[length];
+			page.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		void put(int row, String value) {
+			if (value == null) {
+				lengths.putInt(row, NULL_LENGTH);
+				pages.putInt(row, 0);
+				offsets.putInt(row, 0);
+				return;
+			}
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > MAX_PAGE_SIZE) {
+				throw new IllegalArgumentException("String of " + bytes.length + " bytes does not fit a column page");
+			}
+			if (data.length == 0 || writePosition + bytes.length > data[data.length - 1].capacity()) {
+				int size = data.length == 0 ? FIRST_PAGE_SIZE
+						: Math.min(MAX_PAGE_SIZE, data[data.length - 1].capacity() * 2);
+				ByteBuffer[] grown = Arrays.copyOf(data, data.length + 1);
+				grown[data.length] = ByteBuffer.allocateDirect(Math.max(size, bytes.length));
+				pageBytes += grown[data.length].capacity();
+				data = grown;
+				writePosition = 0;
+			}
+			ByteBuffer page = data[data.length - 1].duplicate();
+			page.position(writePosition);
+			page.put(bytes);
+			pages.putInt(row, data.length - 1);
+			offsets.putInt(row, writePosition);
+			lengths.putInt(row, bytes.length);
+			writePosition += bytes.length;
+		}
+
+		long offHeapBytes() {
+			return pageBytes + pages.offHeapBytes() + offsets.offHeapBytes() + lengths.offHeapBytes();
+		}
+	}
+
+	/**
+	 * Low cardinality strings stored as the int ids of an
+	 * {@link AttributeDictionary}; lookups are case-insensitive.
+	 */
+	static class DictionaryColumn {
+		static final int NOT_FOUND = AttributeDictionary.UNKNOWN;
+		private static final int NULL_CODE = -2;
+
+		private final FixedWidthColumn codes = new FixedWidthColumn(4);
+		private final AttributeDictionary dictionary;
+
+		DictionaryColumn(AttributeDictionary dictionary) {
+			this.dictionary = dictionary;
+		}
+
+		String get(int row) {
+			int code = codes.getInt(row);
+			return code == NULL_CODE ? null : dictionary.valueOf(code);
+		}
+
+		int code(int row) {
+			return codes.getInt(row);
+		}
+
+		int codeOf(String value) {
+			return dictionary.idOf(value);
+		}
+
+		void put(int row, String value) {
+			if (value == null) {
+				codes.putInt(row, NULL_CODE);
+				return;
+			}
+			dictionary.intern(value);
+			codes.putInt(row, dictionary.idOf(value));
+		}
+
+		long offHeapBytes() {
+			return codes.offHeapBytes();
+		}
+	}
+
+	/**
+	 * Open addressing table from a string key to its row, kept off heap as
+	 * pairs of (row + 1, hash). Keys are compared against the column they
+	 * were read from, so the table itself stores no strings.
+	 */
+	static class HashIndex {
+		private static final int SLOT_BYTES = 8;
+		private static final int MAX_SLOTS = 1 << 28;
+
+		private final StringColumn keys;
+		private volatile ByteBuffer table;
+		private int mask;
+		private int size;
+
+		HashIndex(StringColumn keys, int initialSlots) {
+			this.keys = keys;
+			resize(Integer.highestOneBit(Math.max(16, initialSlots - 1) << 1));
+		}
+
+		int find(String key) {
+			ByteBuffer snapshot = table;
+			int slots = snapshot.capacity() / SLOT_BYTES;
+			int hash = hash(key);
+			for (int slot = hash & (slots - 1);; slot = (slot + 1) & (slots - 1)) {
+				int row = snapshot.getInt(slot * SLOT_BYTES) - 1;
+				if (row < 0) {
+					return -1;
+				}
+				if (snapshot.getInt(slot * SLOT_BYTES + 4) == hash && key.equals(keys.get(row))) {
+					return row;
+				}
+			}
+		}
+
+		void put(String key, int row) {
+			if ((size + 1) * 2 > mask + 1) {
+				if (mask + 1 >= MAX_SLOTS) {
+					throw new IllegalStateException("Row index is full at " + size + " keys");
+				}
+				resize((mask + 1) << 1);
+			}
+			insert(table, mask, hash(key), row);
+			size++;
+		}
+
+		long offHeapBytes() {
+			return table.capacity();
+		}
+
+		private void resize(int slots) {
+			ByteBuffer grown = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+			ByteBuffer current = table;
+			if (current != null) {
+				for (int slot = 0; slot <= mask; slot++) {
+					int row = current.getInt(slot * SLOT_BYTES) - 1;
+					if (row >= 0) {
+						insert(grown, slots - 1, current.getInt(slot * SLOT_BYTES + 4), row);
+					}
+				}
+			}
+			mask = slots - 1;
+			table = grown;
+		}
+
+		private static void insert(ByteBuffer target, int mask, int hash, int row) {
+			int slot = hash & mask;
+			while (target.getInt(slot * SLOT_BYTES) != 0) {
+				slot = (slot + 1) & mask;
+			}
+			target.putInt(slot * SLOT_BYTES + 4, hash);
+			target.putInt(slot * SLOT_BYTES, row + 1);
+		}
+
+		private static int hash(String key) {
+			int h = key.hashCode() * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
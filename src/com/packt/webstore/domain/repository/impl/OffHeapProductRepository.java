@@ -0,0 +1,424 @@
+package com.packt.webstore.domain.repository.impl;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+
+import com.packt.webstore.domain.AttributeDictionary;
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.ProductQuery;
+import com.packt.webstore.domain.repository.ProductRepository;
+import com.packt.webstore.domain.repository.impl.OffHeapColumns.DictionaryColumn;
+import com.packt.webstore.domain.repository.impl.OffHeapColumns.FixedWidthColumn;
+import com.packt.webstore.domain.repository.impl.OffHeapColumns.HashIndex;
+import com.packt.webstore.domain.repository.impl.OffHeapColumns.StringColumn;
+import com.packt.webstore.exception.ProductNotFoundException;
+
+/**
+ * Catalog stored column by column in direct buffers, for catalogs too large
+ * to keep as one object graph per product. Manufacturer, category and
+ * condition are dictionary encoded, prices are fixed point longs, and
+ * filters run over the columns; a {@link Product} is only built for the rows
+ * that are actually returned. Only created with the {@code offheap-catalog}
+ * profile active, e.g. {@code -Dspring.profiles.active=offheap-catalog}.
+ * Writers change rows under a {@link StampedLock}; a {@link Product} is
+ * read optimistically and read again under the read lock if a write
+ * overlapped, so it never pairs fields from before and after a change.
+ * Scans test columns without the lock and may match a row on values that
+ * are being changed.
+ */
+@Repository
+@Component(value="OffHeap")
+@Profile("offheap-catalog")
+public class OffHeapProductRepository implements ProductRepository {
+
+	private static final int PRICE_SCALE = 4;
+	private static final byte NULL_PRICE = Byte.MIN_VALUE;
+	private static final int INITIAL_INDEX_SLOTS = 1024;
+
+	private final StringColumn productIds = new StringColumn();
+	private final StringColumn names = new StringColumn();
+	private final StringColumn descriptions = new StringColumn();
+	private final StringColumn imageSources = new StringColumn();
+	private final DictionaryColumn manufacturers = new DictionaryColumn(AttributeDictionary.MANUFACTURERS);
+	private final DictionaryColumn categories = new DictionaryColumn(AttributeDictionary.CATEGORIES);
+	private final DictionaryColumn conditions = new DictionaryColumn(new AttributeDictionary());
+	private final FixedWidthColumn prices = new FixedWidthColumn(8);
+	private final FixedWidthColumn priceScales = new FixedWidthColumn(1);
+	private final FixedWidthColumn unitsInStock = new FixedWidthColumn(8);
+	private final FixedWidthColumn unitsInOrder = new FixedWidthColumn(8);
+	private final FixedWidthColumn discontinued = new FixedWidthColumn(1);
+	private final HashIndex rowsById = new HashIndex(productIds, INITIAL_INDEX_SLOTS);
+
+	private final StampedLock rows = new StampedLock();
+	private volatile int rowCount;
+	private volatile long version;
+
+	public OffHeapProductRepository() {
+		for (Product product : OutMemoryProductRepository.demoProducts()) {
+			addProduct(product);
+		}
+	}
+
+	@Override
+	public List<Product> getAllProducts() {
+		final int rows = rowCount;
+		return new AbstractList<Product>() {
+			@Override
+			public Product get(int row) {
+				if (row < 0 || row >= rows) {
+					throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+				}
+				return read(row);
+			}
+
+			@Override
+			public int size() {
+				return rows;
+			}
+		};
+	}
+
+	@Override
+	public List<Product> getProductsByCategory(String category) {
+		List<Product> productsByCategory = new ArrayList<Product>();
+		int code = categories.codeOf(category);
+		if (code == DictionaryColumn.NOT_FOUND) {
+			return productsByCategory;
+		}
+		int rows = rowCount;
+		for (int row = 0; row < rows; row++) {
+			if (categories.code(row) == code)
+				productsByCategory.add(read(row));
+		}
+		return productsByCategory;
+	}
+
+	@Override
+	public Product getProductById(String productid) {
+		int row = productid == null ? -1 : rowsById.find(productid);
+		if (row < 0) {
+			throw new ProductNotFoundException(productid);
+		}
+		return read(row);
+	}
+
+	@Override
+	public Set<Product> getProductsByFiler(Map<String, List<String>> filterParams) {
+		Set<Product> productsByCategory = new HashSet<Product>();
+		if (!filterParams.containsKey("brand") || !filterParams.containsKey("category")) {
+			return productsByCategory;
+		}
+		Set<Integer> brandCodes = codesOf(manufacturers, filterParams.get("brand"));
+		Set<Integer> categoryCodes = codesOf(categories, filterParams.get("category"));
+		if (brandCodes.isEmpty() || categoryCodes.isEmpty()) {
+			return productsByCategory;
+		}
+		int rows = rowCount;
+		for (int row = 0; row < rows; row++) {
+			if (brandCodes.contains(manufacturers.code(row)) && categoryCodes.contains(categories.code(row)))
+				productsByCategory.add(read(row));
+		}
+		return productsByCategory;
+	}
+
+	/**
+	 * Scans the columns once; sorted queries keep only the best
+	 * {@code offset + limit} rows in a bounded heap instead of sorting every
+	 * match.
+	 */
+	@Override
+	public List<Product> getProducts(ProductQuery query) {
+		List<Product> products = new ArrayList<Product>();
+		if (query.getLimit() <= 0) {
+			return products;
+		}
+		Set<Integer> brandCodes = codesOf(manufacturers, query.getBrands());
+		Set<Integer> categoryCodes = codesOf(categories, query.getCategories());
+		if ((!query.getBrands().isEmpty() && brandCodes.isEmpty())
+				|| (!query.getCategories().isEmpty() && categoryCodes.isEmpty())) {
+			return products;
+		}
+		long minPrice = query.getMinPrice() == null ? Long.MIN_VALUE : fixedPoint(query.getMinPrice(), RoundingMode.CEILING);
+		long maxPrice = query.getMaxPrice() == null ? Long.MAX_VALUE : fixedPoint(query.getMaxPrice(), RoundingMode.FLOOR);
+		long wanted = (long) query.getOffset() + query.getLimit();
+		Comparator<Integer> order = ordering(query);
+		PriorityQueue<Integer> best = order == null ? null
+				: new PriorityQueue<Integer>(16, Collections.reverseOrder(order));
+		int skipped = 0;
+
+		int rows = rowCount;
+		for (int row = 0; row < rows; row++) {
+			if (!brandCodes.isEmpty() && !brandCodes.contains(manufacturers.code(row)))
+				continue;
+			if (!categoryCodes.isEmpty() && !categoryCodes.contains(categories.code(row)))
+				continue;
+			if (query.hasPriceRange()) {
+				if (priceScales.getByte(row) == NULL_PRICE)
+					continue;
+				long price = prices.getLong(row);
+				if (price < minPrice || price > maxPrice)
+					continue;
+			}
+			if (best == null) {
+				if (skipped < query.getOffset()) {
+					skipped++;
+					continue;
+				}
+				products.add(read(row));
+				if (products.size() >= query.getLimit())
+					break;
+			} else {
+				best.add(row);
+				if (best.size() > wanted)
+					best.poll();
+			}
+		}
+		if (best != null) {
+			List<Integer> sorted = new ArrayList<Integer>(best);
+			Collections.sort(sorted, order);
+			for (int i = query.getOffset(); i < sorted.size(); i++) {
+				products.add(read(sorted.get(i)));
+			}
+		}
+		return products;
+	}
+
+	@Override
+	public synchronized void addProduct(Product product) {
+		if (product.getProductId() == null) {
+			throw new IllegalArgumentException("Product id is required");
+		}
+		if (rowsById.find(product.getProductId()) >= 0) {
+			throw new IllegalArgumentException("Product " + product.getProductId() + " already exists");
+		}
+		BigDecimal unitPrice = product.getUnitPrice();
+		long price = unitPrice == null ? 0 : fixedPoint(unitPrice, RoundingMode.UNNECESSARY);
+		int row = rowCount;
+		long stamp = rows.writeLock();
+		try {
+			putRow(row, product, price, unitPrice);
+		} finally {
+			rows.unlockWrite(stamp);
+		}
+		version++;
+	}
+
+	private void putRow(int row, Product product, long price, BigDecimal unitPrice) {
+		productIds.put(row, product.getProductId());
+		names.put(row, product.getName());
+		descriptions.put(row, product.getDescription());
+		imageSources.put(row, product.getImageSource());
+		manufacturers.put(row, product.getManufacturer());
+		categories.put(row, product.getCategory());
+		conditions.put(row, product.getCondition());
+		prices.putLong(row, price);
+		priceScales.putByte(row, unitPrice == null ? NULL_PRICE : (byte) Math.max(0, Math.min(PRICE_SCALE, unitPrice.scale())));
+		unitsInStock.putLong(row, product.getUnitsInStock());
+		unitsInOrder.putLong(row, product.getUnitsInOrder());
+		discontinued.putByte(row, (byte) (product.isDiscontinued() ? 1 : 0));
+		rowsById.put(product.getProductId(), row);
+		rowCount = row + 1;
+	}
+
+	@Override
+	public synchronized void updateStock(String productId, long unitsInStock) {
+		int row = rowsById.find(productId);
+		if (row < 0) {
+			throw new ProductNotFoundException(productId);
+		}
+		long stamp = rows.writeLock();
+		try {
+			this.unitsInStock.putLong(row, unitsInStock);
+		} finally {
+			rows.unlockWrite(stamp);
+		}
+		version++;
+	}
+
+	@Override
+	public synchronized long decreaseStock(String productId, long quantity) {
+		int row = rowsById.find(productId);
+		if (row < 0) {
+			throw new ProductNotFoundException(productId);
+		}
+		long available = unitsInStock.getLong(row);
+		if (available < quantity) {
+			throw new IllegalArgumentException("Out of stock. Available units in stock is " + available);
+		}
+		long stamp = rows.writeLock();
+		try {
+			unitsInStock.putLong(row, available - quantity);
+		} finally {
+			rows.unlockWrite(stamp);
+		}
+		version++;
+		return available - quantity;
+	}
+
+	@Override
+	public synchronized Product updatePrice(String productId, BigDecimal unitPrice) {
+		if (unitPrice == null) {
+			throw new IllegalArgumentException("Unit price is required");
+		}
+		int row = rowsById.find(productId);
+		if (row < 0) {
+			throw new ProductNotFoundException(productId);
+		}
+		long price = fixedPoint(unitPrice, RoundingMode.UNNECESSARY);
+		byte scale = (byte) Math.max(0, Math.min(PRICE_SCALE, unitPrice.scale()));
+		long stamp = rows.writeLock();
+		try {
+			prices.putLong(row, price);
+			priceScales.putByte(row, scale);
+		} finally {
+			rows.unlockWrite(stamp);
+		}
+		version++;
+		return read(row);
+	}
+
+	@Override
+	public synchronized Product discontinue(String productId) {
+		int row = rowsById.find(productId);
+		if (row < 0) {
+			throw new ProductNotFoundException(productId);
+		}
+		long stamp = rows.writeLock();
+		try {
+			discontinued.putByte(row, (byte) 1);
+		} finally {
+			rows.unlockWrite(stamp);
+		}
+		version++;
+		return read(row);
+	}
+
+	@Override
+	public long getCatalogVersion() {
+		return version;
+	}
+
+	public int size() {
+		return rowCount;
+	}
+
+	public long getOffHeapBytes() {
+		return productIds.offHeapBytes() + names.offHeapBytes() + descriptions.offHeapBytes()
+				+ imageSources.offHeapBytes() + manufacturers.offHeapBytes() + categories.offHeapBytes()
+				+ conditions.offHeapBytes() + prices.offHeapBytes() + priceScales.offHeapBytes()
+				+ unitsInStock.offHeapBytes() + unitsInOrder.offHeapBytes() + discontinued.offHeapBytes()
+				+ rowsById.offHeapBytes();
+	}
+
+	private Product read(int row) {
+		long stamp = rows.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				Product product = readRow(row);
+				if (rows.validate(stamp)) {
+					return product;
+				}
+			} catch (RuntimeException e) {
+				// a torn read of a row being written, read again under the lock
+			}
+		}
+		stamp = rows.readLock();
+		try {
+			return readRow(row);
+		} finally {
+			rows.unlockRead(stamp);
+		}
+	}
+
+	private Product readRow(int row) {
+		Product product = new Product();
+		product.setProductId(productIds.get(row));
+		product.setName(names.get(row));
+		product.setDescription(descriptions.get(row));
+		product.setImageSource(imageSources.get(row));
+		product.setManufacturer(manufacturers.get(row));
+		product.setCategory(categories.get(row));
+		product.setCondition(conditions.get(row));
+		byte scale = priceScales.getByte(row);
+		if (scale != NULL_PRICE) {
+			product.setUnitPrice(BigDecimal.valueOf(prices.getLong(row), PRICE_SCALE).setScale(scale, RoundingMode.UNNECESSARY));
+		}
+		product.setUnitsInStock(unitsInStock.getLong(row));
+		product.setUnitsInOrder(unitsInOrder.getLong(row));
+		product.setDiscontinued(discontinued.getByte(row) != 0);
+		return product;
+	}
+
+	private Comparator<Integer> ordering(ProductQuery query) {
+		Comparator<Integer> order;
+		if (ProductQuery.SORT_BY_NAME.equals(query.getSortBy())) {
+			order = new Comparator<Integer>() {
+				@Override
+				public int compare(Integer left, Integer right) {
+					String leftName = names.get(left);
+					String rightName = names.get(right);
+					if (leftName == null || rightName == null) {
+						return leftName == null ? (rightName == null ? 0 : -1) : 1;
+					}
+					return leftName.toLowerCase(Locale.ROOT).compareTo(rightName.toLowerCase(Locale.ROOT));
+				}
+			};
+		} else if (ProductQuery.SORT_BY_PRICE.equals(query.getSortBy()) || query.hasPriceRange()) {
+			order = new Comparator<Integer>() {
+				@Override
+				public int compare(Integer left, Integer right) {
+					boolean leftNull = priceScales.getByte(left) == NULL_PRICE;
+					boolean rightNull = priceScales.getByte(right) == NULL_PRICE;
+					if (leftNull || rightNull) {
+						return leftNull ? (rightNull ? 0 : -1) : 1;
+					}
+					return Long.compare(prices.getLong(left), prices.getLong(right));
+				}
+			};
+		} else {
+			return null;
+		}
+		return query.isDescending() ? Collections.reverseOrder(order) : order;
+	}
+
+	private static Set<Integer> codesOf(DictionaryColumn column, Iterable<String> values) {
+		Set<Integer> codes = new LinkedHashSet<Integer>();
+		for (String value : values) {
+			int code = column.codeOf(value);
+			if (code != DictionaryColumn.NOT_FOUND)
+				codes.add(code);
+		}
+		return codes;
+	}
+
+	/**
+	 * Prices are kept as longs with four decimals; bounds of a range are
+	 * rounded inwards so the comparison stays exact.
+	 */
+	private static long fixedPoint(BigDecimal price, RoundingMode rounding) {
+		try {
+			return price.setScale(PRICE_SCALE, rounding).unscaledValue().longValueExact();
+		} catch (ArithmeticException e) {
+			if (rounding == RoundingMode.UNNECESSARY) {
+				throw new IllegalArgumentException("Price " + price + " does not fit the price column");
+			}
+			return price.signum() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.packt.webstore.domain.repository.impl;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -11,17 +12,35 @@ import java.util.Set;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
 
+import com.packt.webstore.cluster.CatalogChangeLog;
+import com.packt.webstore.domain.AttributeDictionary;
+import com.packt.webstore.domain.CatalogChange;
+import com.packt.webstore.domain.CatalogSnapshot;
 import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.ProductQuery;
 import com.packt.webstore.domain.repository.ProductRepository;
+import com.packt.webstore.exception.NotLeaderException;
 import com.packt.webstore.exception.ProductNotFoundException;
 
 @Repository
 @Component(value="OutMemory")
 public class OutMemoryProductRepository implements ProductRepository{
 
-	private List<Product> listOfProducts = new ArrayList<Product>();
+	private static final int CHANGE_LOG_CAPACITY = 10000;
+
+	private volatile CatalogVersion catalog;
+	private final CatalogChangeLog changeLog = new CatalogChangeLog(CHANGE_LOG_CAPACITY);
+	private volatile String leader;
 	
 	public OutMemoryProductRepository(){
+		List<Product> products = demoProducts();
+		for (Product product : products) {
+			product.internAttributes();
+		}
+		catalog = CatalogVersion.of(1, products);
+	}
+
+	static List<Product> demoProducts(){
 		
 		Product iphone = new Product("P1234", "iPhone 5s", new BigDecimal(500));
 		iphone.setDescription("Apple iPhone 5s smartphone with 4.00-inch 640x1136 display and 8-megapixel rear camera");
@@ -58,27 +77,17 @@ public class OutMemoryProductRepository implements ProductRepository{
 		tablet_Nexus9.setUnitsInStock(1500);
 		tablet_Nexus9.setImageSource("P1238.jpg");
 		
-		listOfProducts.add(iphone);
-		listOfProducts.add(laptop_dell);
-		listOfProducts.add(tablet_Nexus);
-		listOfProducts.add(galaxy_s5);
-		listOfProducts.add(tablet_Nexus9);
+		return Arrays.asList(iphone, laptop_dell, tablet_Nexus, galaxy_s5, tablet_Nexus9);
 	}
 	
 	@Override
 	public List<Product> getAllProducts(){
-		return listOfProducts;
+		return catalog.asList();
 	}
 	
 	@Override
 	public Product getProductById(String productid) {
-		Product productById = null;
-		for(Product product: listOfProducts){
-			if(product != null && product.getProductId() != null && product.getProductId().equals(productid)){
-				productById = product;
-				break;
-			}
-		}
+		Product productById = catalog.get(productid);
 		if(productById == null){
 			throw new ProductNotFoundException(productid);
 		}
@@ -88,8 +97,11 @@ public class OutMemoryProductRepository implements ProductRepository{
 	@Override
 	public List<Product> getProductsByCategory(String category) {
 		List<Product> productsByCategory = new ArrayList<Product>();
-		for(Product product: listOfProducts){
-			if(category.equalsIgnoreCase(product.getCategory()))
+		int categoryId = AttributeDictionary.CATEGORIES.idOf(category);
+		if(categoryId == AttributeDictionary.UNKNOWN)
+			return productsByCategory;
+		for(Product product: catalog.asList()){
+			if(product.getCategoryId() == categoryId)
 				productsByCategory.add(product);
 		}
 		
@@ -100,25 +112,25 @@ public class OutMemoryProductRepository implements ProductRepository{
 	@Override
 	public Set<Product> getProductsByFiler( Map<String, List<String>> filterParams) {
 
+		List<Product> products = catalog.asList();
 		Set<Product> productsByBrand = new HashSet<Product>();
 		Set<Product> productsByCategory = new HashSet<Product>();
 		
 		Set<String> criterias = filterParams.keySet();
 		
 		if(criterias.contains("brand")){
-			for(String brandName: filterParams.get("brand")){
-				for(Product product: listOfProducts){
-					if(brandName.equalsIgnoreCase(product.getManufacturer())){
-						productsByBrand.add(product);
-					}
-					
-				}
+			int[] brandIds = AttributeDictionary.MANUFACTURERS.idsOf(filterParams.get("brand"));
+			for(Product product: products){
+				if(ProductQuery.contains(brandIds, product.getManufacturerId()))
+					productsByBrand.add(product);
 			}
 		}
 		
 		if(criterias.contains("category")){
-			for(String categoryName: filterParams.get("category")){
-				productsByCategory.addAll(this.getProductsByCategory(categoryName));
+			int[] categoryIds = AttributeDictionary.CATEGORIES.idsOf(filterParams.get("category"));
+			for(Product product: products){
+				if(ProductQuery.contains(categoryIds, product.getCategoryId()))
+					productsByCategory.add(product);
 			}
 		}
 		
@@ -127,8 +139,189 @@ public class OutMemoryProductRepository implements ProductRepository{
 		return productsByCategory;
 	}
 
+	/**
+	 * Sorted listings and price ranges are answered by walking the ordered
+	 * indexes of one catalog version, stopping as soon as the page is full;
+	 * brand and category criteria are checked on the way.
+	 */
+	@Override
+	public List<Product> getProducts(ProductQuery query) {
+		CatalogVersion snapshot = catalog;
+		PageCollector page = new PageCollector(snapshot, query);
+		if (query.getLimit() <= 0) {
+			return page.products;
+		}
+		if (ProductQuery.SORT_BY_NAME.equals(query.getSortBy())) {
+			snapshot.getNameIndex().walk(null, null, query.isDescending(), page);
+		} else if (ProductQuery.SORT_BY_PRICE.equals(query.getSortBy()) || query.hasPriceRange()) {
+			snapshot.getPriceIndex().walk(query.getMinPrice(), query.getMaxPrice(), query.isDescending(), page);
+		} else {
+			for (Product product : snapshot.asList()) {
+				if (!page.visit(null, product.getProductId()))
+					break;
+			}
+		}
+		return page.products;
+	}
+
+	@Override
+	public synchronized void addProduct(Product product) {
+		checkWritable();
+		Product added = new Product(product);
+		added.internAttributes();
+		catalog = catalog.toBuilder().add(added).build();
+		changeLog.append(CatalogChange.productAdded(added));
+	}
+
 	@Override
-	public void addProduct(Product product) {
-		listOfProducts.add(product);
+	public synchronized void updateStock(String productId, long unitsInStock) {
+		checkWritable();
+		catalog = catalog.toBuilder().replace(withStock(getProductById(productId), unitsInStock)).build();
+		changeLog.append(CatalogChange.stockUpdated(productId, unitsInStock));
+	}
+
+	/**
+	 * Checks and takes the units in one step, so concurrent orders can
+	 * neither oversell nor overwrite each other's stock update.
+	 */
+	@Override
+	public synchronized long decreaseStock(String productId, long quantity) {
+		checkWritable();
+		Product product = getProductById(productId);
+		if (product.getUnitsInStock() < quantity) {
+			throw new IllegalArgumentException("Out of stock. Available units in stock is " + product.getUnitsInStock());
+		}
+		long unitsInStock = product.getUnitsInStock() - quantity;
+		catalog = catalog.toBuilder().replace(withStock(product, unitsInStock)).build();
+		changeLog.append(CatalogChange.stockUpdated(productId, unitsInStock));
+		return unitsInStock;
+	}
+
+	@Override
+	public synchronized Product updatePrice(String productId, BigDecimal unitPrice) {
+		checkWritable();
+		Product updated = new Product(getProductById(productId));
+		updated.setUnitPrice(unitPrice);
+		return replace(updated);
+	}
+
+	@Override
+	public synchronized Product discontinue(String productId) {
+		checkWritable();
+		Product updated = new Product(getProductById(productId));
+		updated.setDiscontinued(true);
+		return replace(updated);
+	}
+
+	@Override
+	public long getCatalogVersion() {
+		return catalog.getVersion();
+	}
+
+	/**
+	 * Consistent snapshot of the catalog; readers never block and never see
+	 * a version that is still being built.
+	 */
+	public CatalogVersion getCatalog() {
+		return catalog;
+	}
+
+	public CatalogChangeLog getChangeLog() {
+		return changeLog;
+	}
+
+	public synchronized CatalogSnapshot getSnapshot() {
+		return new CatalogSnapshot(changeLog.getLastSequence(), new ArrayList<Product>(catalog.asList()));
+	}
+
+	public synchronized void restore(CatalogSnapshot snapshot) {
+		for (Product product : snapshot.getProducts()) {
+			product.internAttributes();
+		}
+		catalog = CatalogVersion.of(catalog.getVersion() + 1, snapshot.getProducts());
+		changeLog.reset(snapshot.getSequence());
+	}
+
+	/**
+	 * Applies a batch of replicated changes and publishes them as one version.
+	 */
+	public synchronized void apply(List<CatalogChange> changes) {
+		CatalogVersion.Builder next = catalog.toBuilder();
+		for (CatalogChange change : changes) {
+			if (CatalogChange.PRODUCT_ADDED.equals(change.getType())) {
+				change.getProduct().internAttributes();
+				next.add(change.getProduct());
+			} else if (CatalogChange.PRODUCT_UPDATED.equals(change.getType())) {
+				if (next.get(change.getProductId()) == null) {
+					throw new ProductNotFoundException(change.getProductId());
+				}
+				change.getProduct().internAttributes();
+				next.replace(change.getProduct());
+			} else if (CatalogChange.STOCK_UPDATED.equals(change.getType())) {
+				Product current = next.get(change.getProductId());
+				if (current == null) {
+					throw new ProductNotFoundException(change.getProductId());
+				}
+				next.replace(withStock(current, change.getUnitsInStock()));
+			} else {
+				throw new IllegalArgumentException("Unknown catalog change type " + change.getType());
+			}
+		}
+		CatalogVersion applied = next.build();
+		for (CatalogChange change : changes) {
+			changeLog.appendReplicated(change);
+		}
+		catalog = applied;
+	}
+
+	public String getLeader() {
+		return leader;
+	}
+
+	public void setLeader(String leader) {
+		this.leader = leader;
+	}
+
+	private static class PageCollector implements SortedIndex.Visitor<Object> {
+		private final CatalogVersion snapshot;
+		private final ProductQuery query;
+		private final List<Product> products = new ArrayList<Product>();
+		private int skipped;
+
+		PageCollector(CatalogVersion snapshot, ProductQuery query) {
+			this.snapshot = snapshot;
+			this.query = query;
+		}
+
+		@Override
+		public boolean visit(Object key, String productId) {
+			Product product = snapshot.get(productId);
+			if (product == null || !query.matches(product))
+				return true;
+			if (skipped < query.getOffset()) {
+				skipped++;
+				return true;
+			}
+			products.add(product);
+			return products.size() < query.getLimit();
+		}
+	}
+
+	private Product replace(Product updated) {
+		catalog = catalog.toBuilder().replace(updated).build();
+		changeLog.append(CatalogChange.productUpdated(updated));
+		return updated;
+	}
+
+	private Product withStock(Product product, long unitsInStock) {
+		Product updated = new Product(product);
+		updated.setUnitsInStock(unitsInStock);
+		return updated;
+	}
+
+	private void checkWritable() {
+		if (leader != null) {
+			throw new NotLeaderException(leader);
+		}
 	}
 }
@@ -0,0 +1,382 @@
+package com.packt.webstore.domain.repository.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+
+import com.packt.webstore.cluster.CartRpcClient;
+import com.packt.webstore.cluster.CartRpcServer;
+import com.packt.webstore.cluster.ClusterNodes;
+import com.packt.webstore.cluster.ConsistentHashRing;
+import com.packt.webstore.domain.Cart;
+import com.packt.webstore.domain.repository.CartRepository;
+
+/**
+ * Partitions carts by cart id over the nodes listed in the
+ * {@code webstore.cart.nodes} system property (host:port, comma separated).
+ * This node is {@code webstore.cart.localNode}; with no other nodes
+ * configured every cart is kept locally and no RPC server is started.
+ * Nodes join and leave through {@link #addNode} and {@link #removeNode},
+ * which must be called on every node of the ring, one node at a time;
+ * until the last node has applied a change, carts in the ranges it moves
+ * may not be found through the nodes that applied it already.
+ * Cart operations, local and served to other nodes, wait while carts are
+ * being handed off. Nodes only accept calls signed with the shared
+ * {@code webstore.cart.clusterSecret}, which a ring of more than one node
+ * requires.
+ * <p>
+ * Each node indexes the products of the carts it holds, and carts handed
+ * to another node are indexed there, so {@link #localCartsWith} finds
+ * every cart of the ring that holds a product when asked on every node.
+ * <p>
+ * Carts carry no version: a read, change and update of a cart held by
+ * another node is last writer wins, so two nodes changing the same cart
+ * at once can lose one of the changes. Ring changes must not run on two
+ * nodes at the same time: each holds its write lock while it hands carts
+ * to the other, whose served shard waits for its read lock, so both
+ * hand-offs stall until the RPC read timeout fails them and both nodes
+ * undo the change.
+ */
+@Repository
+@Component(value = "ShardedCart")
+public class ShardedCartRepositoryImpl implements CartRepository {
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Value("#{systemProperties['webstore.cart.localNode'] ?: 'localhost:7001'}")
+	private String localNode;
+
+	@Value("#{systemProperties['webstore.cart.nodes'] ?: ''}")
+	private String nodes;
+
+	@Value("#{systemProperties['webstore.cart.virtualNodes'] ?: 128}")
+	private int virtualNodes;
+
+	@Value("#{systemProperties['webstore.cart.clusterSecret'] ?: ''}")
+	private String clusterSecret;
+
+	private final ConcurrentMap<String, Cart> localCarts = new ConcurrentHashMap<String, Cart>();
+	private final ConcurrentMap<String, CartRpcClient> clients = new ConcurrentHashMap<String, CartRpcClient>();
+	private final CartProductIndex productIndex = new CartProductIndex();
+	private final CartRepository localShard = new LocalShard();
+	private final ReadWriteLock moving = new ReentrantReadWriteLock();
+	private ConsistentHashRing ring;
+	private CartRpcServer server;
+
+	public ShardedCartRepositoryImpl() {
+	}
+
+	public ShardedCartRepositoryImpl(String localNode, String nodes, int virtualNodes, String clusterSecret) {
+		this.localNode = localNode;
+		this.nodes = nodes;
+		this.virtualNodes = virtualNodes;
+		this.clusterSecret = clusterSecret;
+	}
+
+	@PostConstruct
+	public void init() throws IOException {
+		ring = new ConsistentHashRing(virtualNodes);
+		ring.addNode(localNode);
+		for (String node : ClusterNodes.parse(nodes)) {
+			ring.addNode(node);
+		}
+		if (ring.size() > 1) {
+			startServer();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (server != null) {
+			server.stop();
+		}
+		for (CartRpcClient client : clients.values()) {
+			client.close();
+		}
+	}
+
+	@Override
+	public Cart create(Cart cart) {
+		moving.readLock().lock();
+		try {
+			return shardFor(cart.getCartId()).create(cart);
+		} finally {
+			moving.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Cart read(String cartId) {
+		moving.readLock().lock();
+		try {
+			return shardFor(cartId).read(cartId);
+		} finally {
+			moving.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void update(String cartId, Cart cart) {
+		moving.readLock().lock();
+		try {
+			shardFor(cartId).update(cartId, cart);
+		} finally {
+			moving.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void delete(String cartId) {
+		moving.readLock().lock();
+		try {
+			shardFor(cartId).delete(cartId);
+		} finally {
+			moving.readLock().unlock();
+		}
+	}
+
+	public Set<String> getNodes() {
+		return ring.getNodes();
+	}
+
+	public String getLocalNode() {
+		return localNode;
+	}
+
+	public int getLocalCartCount() {
+		return localCarts.size();
+	}
+
+	public boolean holds(String cartId) {
+		return localCarts.containsKey(cartId);
+	}
+
+	/**
+	 * The carts held by this node that hold the product. An id can belong
+	 * to a cart since handed off or deleted, or one whose line is gone.
+	 */
+	public List<String> localCartsWith(String productId) {
+		return productIndex.cartsWith(productId);
+	}
+
+	/**
+	 * Adds the node to the ring and hands it the local carts it now owns.
+	 * If a hand-off fails the node is taken out again and every cart stays
+	 * here. Returns how many carts were moved.
+	 */
+	public int addNode(String node) throws IOException {
+		ClusterNodes.toAddress(node);
+		moving.writeLock().lock();
+		try {
+			if (!ring.addNode(node)) {
+				return 0;
+			}
+			try {
+				startServer();
+				return rebalance();
+			} catch (IOException | RuntimeException e) {
+				ring.removeNode(node);
+				throw e;
+			}
+		} finally {
+			moving.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the node from the ring. Only the leaving node itself holds
+	 * carts to hand off; if that fails it stays in the ring. Returns how
+	 * many carts were moved.
+	 */
+	public int removeNode(String node) {
+		moving.writeLock().lock();
+		try {
+			if (ring.size() == 1 && ring.getNodes().contains(node)) {
+				throw new IllegalArgumentException("Cannot remove the last node " + node + " from the cart ring");
+			}
+			if (!ring.removeNode(node)) {
+				return 0;
+			}
+			int moved;
+			try {
+				moved = rebalance();
+			} catch (RuntimeException e) {
+				ring.addNode(node);
+				throw e;
+			}
+			CartRpcClient client = clients.remove(node);
+			if (client != null) {
+				client.close();
+			}
+			return moved;
+		} finally {
+			moving.writeLock().unlock();
+		}
+	}
+
+	private CartRepository shardFor(String cartId) {
+		String owner = ring.getNode(cartId);
+		return owner.equals(localNode) ? localShard : clientFor(owner);
+	}
+
+	private CartRpcClient clientFor(String node) {
+		CartRpcClient client = clients.get(node);
+		if (client == null) {
+			CartRpcClient created = new CartRpcClient(node, secret());
+			client = clients.putIfAbsent(node, created);
+			if (client == null) {
+				client = created;
+			}
+		}
+		return client;
+	}
+
+	private void startServer() throws IOException {
+		if (server == null) {
+			server = new CartRpcServer(ClusterNodes.toAddress(localNode), secret(), new ServedShard());
+			server.start();
+		}
+	}
+
+	private byte[] secret() {
+		if (clusterSecret.isEmpty()) {
+			throw new IllegalStateException("webstore.cart.clusterSecret must be set for a cart ring of more than one node");
+		}
+		return clusterSecret.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Consistent hashing only reassigns the ranges next to the joining or
+	 * leaving node, so only the local carts in those ranges are handed off.
+	 * Called with the write lock held: no cart can change between its
+	 * transfer and its removal here, a cart is encoded under its own monitor
+	 * so an in-place change is never half sent, and local carts are only
+	 * dropped once every transfer succeeded.
+	 */
+	private int rebalance() {
+		List<String> moved = new ArrayList<String>();
+		for (Map.Entry<String, Cart> entry : localCarts.entrySet()) {
+			String owner = ring.getNode(entry.getKey());
+			if (!owner.equals(localNode)) {
+				Cart cart = entry.getValue();
+				synchronized (cart) {
+					clientFor(owner).transfer(cart);
+				}
+				moved.add(entry.getKey());
+			}
+		}
+		localCarts.keySet().removeAll(moved);
+		for (String cartId : moved) {
+			productIndex.remove(cartId);
+		}
+		logger.info("Cart ring rebalanced over " + ring.getNodes() + ", moved " + moved.size() + " carts");
+		return moved.size();
+	}
+
+	private class LocalShard implements CartRepository {
+
+		@Override
+		public Cart create(Cart cart) {
+			if (localCarts.putIfAbsent(cart.getCartId(), cart) != null) {
+				throw new IllegalArgumentException(String.format(
+						"Can not create a cart. A cart with the given id (%s) already exists.",
+						cart.getCartId()));
+			}
+			index(cart.getCartId(), cart);
+			return cart;
+		}
+
+		@Override
+		public Cart read(String cartId) {
+			return localCarts.get(cartId);
+		}
+
+		@Override
+		public void update(String cartId, Cart cart) {
+			if (localCarts.replace(cartId, cart) == null) {
+				throw new IllegalArgumentException(String.format(
+						"Cannot update cart. Cart with the given id (%s) does not exist.",
+						cartId));
+			}
+			index(cartId, cart);
+		}
+
+		@Override
+		public void delete(String cartId) {
+			if (localCarts.remove(cartId) == null) {
+				throw new IllegalArgumentException(String.format(
+						"Cannot delete cart. Cart with the given id (%s) does not exist.",
+						cartId));
+			}
+			productIndex.remove(cartId);
+		}
+
+		private void index(String cartId, Cart cart) {
+			productIndex.index(cartId, cart.getCartItems() == null ? Collections.<String> emptySet()
+					: cart.getCartItems().keySet());
+		}
+	}
+
+	/**
+	 * The local shard as served to the other nodes; their calls wait out a
+	 * hand-off like local ones.
+	 */
+	private class ServedShard implements CartRepository {
+
+		@Override
+		public Cart create(Cart cart) {
+			moving.readLock().lock();
+			try {
+				return localShard.create(cart);
+			} finally {
+				moving.readLock().unlock();
+			}
+		}
+
+		@Override
+		public Cart read(String cartId) {
+			moving.readLock().lock();
+			try {
+				return localShard.read(cartId);
+			} finally {
+				moving.readLock().unlock();
+			}
+		}
+
+		@Override
+		public void update(String cartId, Cart cart) {
+			moving.readLock().lock();
+			try {
+				localShard.update(cartId, cart);
+			} finally {
+				moving.readLock().unlock();
+			}
+		}
+
+		@Override
+		public void delete(String cartId) {
+			moving.readLock().lock();
+			try {
+				localShard.delete(cartId);
+			} finally {
+				moving.readLock().unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.packt.webstore.domain.repository.impl;
+
+/**
+ * Immutable ordered index of (sort key, product id) pairs, implemented as a
+ * treap with path copying. An insert or remove copies only the O(log n)
+ * nodes on its path and shares the rest with the previous index, which is
+ * what lets every {@link CatalogVersion} carry its own consistent index.
+ * Entries are ordered by key (nulls first) and then by product id.
+ */
+final class SortedIndex<K extends Comparable<K>> {
+
+	/**
+	 * Receives entries in index order; returning false stops the walk.
+	 */
+	interface Visitor<K> {
+		boolean visit(K key, String productId);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static final SortedIndex EMPTY = new SortedIndex<String>(null);
+
+	private final Node<K> root;
+
+	private SortedIndex(Node<K> root) {
+		this.root = root;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <K extends Comparable<K>> SortedIndex<K> empty() {
+		return EMPTY;
+	}
+
+	int size() {
+		return Node.size(root);
+	}
+
+	SortedIndex<K> insert(K key, String productId) {
+		return new SortedIndex<K>(insert(root, key, productId, priority(productId)));
+	}
+
+	SortedIndex<K> remove(K key, String productId) {
+		return new SortedIndex<K>(remove(root, key, productId));
+	}
+
+	/**
+	 * Walks the entries whose key lies within the bounds, a null bound
+	 * meaning unbounded, in ascending or descending order.
+	 */
+	void walk(K from, K to, boolean descending, Visitor<? super K> visitor) {
+		walk(root, from, to, descending, visitor);
+	}
+
+	private static <K extends Comparable<K>> boolean walk(Node<K> node, K from, K to, boolean descending,
+			Visitor<? super K> visitor) {
+		if (node == null) {
+			return true;
+		}
+		boolean aboveFrom = from == null || compareKeys(node.key, from) >= 0;
+		boolean belowTo = to == null || compareKeys(node.key, to) <= 0;
+		Node<K> first = descending ? node.right : node.left;
+		Node<K> second = descending ? node.left : node.right;
+		boolean visitFirst = descending ? belowTo : aboveFrom;
+		boolean visitSecond = descending ? aboveFrom : belowTo;
+		if (visitFirst && !walk(first, from, to, descending, visitor)) {
+			return false;
+		}
+		if (aboveFrom && belowTo && !visitor.visit(node.key, node.productId)) {
+			return false;
+		}
+		return !visitSecond || walk(second, from, to, descending, visitor);
+	}
+
+	private static <K extends Comparable<K>> Node<K> insert(Node<K> node, K key, String productId, int priority) {
+		if (node == null) {
+			return new Node<K>(key, productId, priority, null, null);
+		}
+		int cmp = compare(key, productId, node);
+		if (cmp == 0) {
+			return node;
+		}
+		if (cmp < 0) {
+			Node<K> left = insert(node.left, key, productId, priority);
+			return left.priority > node.priority
+					? left.with(left.left, node.with(left.right, node.right))
+					: node.with(left, node.right);
+		}
+		Node<K> right = insert(node.right, key, productId, priority);
+		return right.priority > node.priority
+				? right.with(node.with(node.left, right.left), right.right)
+				: node.with(node.left, right);
+	}
+
+	private static <K extends Comparable<K>> Node<K> remove(Node<K> node, K key, String productId) {
+		if (node == null) {
+			return null;
+		}
+		int cmp = compare(key, productId, node);
+		if (cmp < 0) {
+			Node<K> left = remove(node.left, key, productId);
+			return left == node.left ? node : node.with(left, node.right);
+		}
+		if (cmp > 0) {
+			Node<K> right = remove(node.right, key, productId);
+			return right == node.right ? node : node.with(node.left, right);
+		}
+		return merge(node.left, node.right);
+	}
+
+	private static <K extends Comparable<K>> Node<K> merge(Node<K> left, Node<K> right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.priority > right.priority) {
+			return left.with(left.left, merge(left.right, right));
+		}
+		return right.with(merge(left, right.left), right.right);
+	}
+
+	private static <K extends Comparable<K>> int compare(K key, String productId, Node<K> node) {
+		int cmp = compareKeys(key, node.key);
+		return cmp != 0 ? cmp : productId.compareTo(node.productId);
+	}
+
+	private static <K extends Comparable<K>> int compareKeys(K a, K b) {
+		if (a == null) {
+			return b == null ? 0 : -1;
+		}
+		return b == null ? 1 : a.compareTo(b);
+	}
+
+	private static int priority(String productId) {
+		int h = productId.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static final class Node<K> {
+		final K key;
+		final String productId;
+		final int priority;
+		final Node<K> left;
+		final Node<K> right;
+		final int size;
+
+		Node(K key, String productId, int priority, Node<K> left, Node<K> right) {
+			this.key = key;
+			this.productId = productId;
+			this.priority = priority;
+			this.left = left;
+			this.right = right;
+			this.size = 1 + size(left) + size(right);
+		}
+
+		Node<K> with(Node<K> left, Node<K> right) {
+			return new Node<K>(key, productId, priority, left, right);
+		}
+
+		static int size(Node<?> node) {
+			return node == null ? 0 : node.size;
+		}
+	}
+}
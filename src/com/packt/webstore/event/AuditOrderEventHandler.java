@@ -0,0 +1,16 @@
+package com.packt.webstore.event;
+
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AuditOrderEventHandler implements OrderEventHandler {
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Override
+	public void onEvent(OrderEvent event, long sequence, boolean endOfBatch) {
+		logger.info("Order #" + sequence + ": " + event.getQuantity() + " x " + event.getProductId() + " at "
+				+ event.getUnitPrice() + ", " + event.getUnitsInStock() + " left in stock");
+	}
+}
@@ -0,0 +1,48 @@
+package com.packt.webstore.event;
+
+import java.math.BigDecimal;
+
+/**
+ * Slot of the order ring buffer. Instances are preallocated and reused, so
+ * handlers must copy whatever they keep beyond {@code onEvent}.
+ */
+public class OrderEvent {
+	private String productId;
+	private long quantity;
+	private BigDecimal unitPrice;
+	private long unitsInStock;
+	private long timestamp;
+
+	void set(String productId, long quantity, BigDecimal unitPrice, long unitsInStock, long timestamp) {
+		this.productId = productId;
+		this.quantity = quantity;
+		this.unitPrice = unitPrice;
+		this.unitsInStock = unitsInStock;
+		this.timestamp = timestamp;
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public long getQuantity() {
+		return quantity;
+	}
+
+	public BigDecimal getUnitPrice() {
+		return unitPrice;
+	}
+
+	public long getUnitsInStock() {
+		return unitsInStock;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "OrderEvent [productId=" + productId + ", quantity=" + quantity + ", unitsInStock=" + unitsInStock + "]";
+	}
+}
@@ -0,0 +1,10 @@
+package com.packt.webstore.event;
+
+/**
+ * Side effect of a committed order. Every handler bean is run on its own
+ * consumer thread; {@code endOfBatch} marks the last event currently
+ * available so handlers can flush batched work.
+ */
+public interface OrderEventHandler {
+	void onEvent(OrderEvent event, long sequence, boolean endOfBatch) throws Exception;
+}
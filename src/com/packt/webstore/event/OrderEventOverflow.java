@@ -0,0 +1,78 @@
+package com.packt.webstore.event;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only spill file for order events that found the ring full. The
+ * pipeline drains it back into the ring as space frees up, so a spilled
+ * event is delivered late rather than lost while the node runs. Spilled
+ * events are delivered after events published while they waited, so
+ * handlers see them out of order. The file is not a journal: it is
+ * emptied when opened, and once its events are back in the ring they
+ * are as volatile as any other; a crash loses them.
+ */
+class OrderEventOverflow {
+
+	private final File file;
+	private final FileOutputStream out;
+	private long readOffset;
+
+	OrderEventOverflow(File file) throws IOException {
+		this.file = file;
+		this.out = new FileOutputStream(file, false);
+	}
+
+	synchronized void append(String productId, long quantity, BigDecimal unitPrice, long unitsInStock, long timestamp)
+			throws IOException {
+		String line = productId + "\t" + quantity + "\t" + unitPrice + "\t" + unitsInStock + "\t" + timestamp + "\n";
+		out.write(line.getBytes(StandardCharsets.UTF_8));
+		out.flush();
+	}
+
+	/**
+	 * Republishes spilled events until the ring is full or the file is
+	 * drained, and returns how many were moved back.
+	 */
+	synchronized int drainTo(OrderEventRingBuffer ring) throws IOException {
+		long length = out.getChannel().size();
+		if (readOffset >= length) {
+			return 0;
+		}
+		int drained = 0;
+		FileInputStream fileIn = new FileInputStream(file);
+		try {
+			fileIn.getChannel().position(readOffset);
+			BufferedReader in = new BufferedReader(new InputStreamReader(fileIn, StandardCharsets.UTF_8));
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.split("\t");
+				long sequence = ring.publish(fields[0], Long.parseLong(fields[1]),
+						"null".equals(fields[2]) ? null : new BigDecimal(fields[2]),
+						Long.parseLong(fields[3]), Long.parseLong(fields[4]), false);
+				if (sequence < 0) {
+					break;
+				}
+				drained++;
+				readOffset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+			}
+		} finally {
+			fileIn.close();
+		}
+		if (readOffset >= out.getChannel().size()) {
+			out.getChannel().truncate(0);
+			readOffset = 0;
+		}
+		return drained;
+	}
+
+	synchronized void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,183 @@
+package com.packt.webstore.event;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Takes order side effects off the checkout path. Checkout threads publish
+ * into a preallocated ring buffer and every {@link OrderEventHandler} bean
+ * consumes it in batches on its own thread. With
+ * {@code webstore.orders.overflowFile} set, events that find the ring full
+ * are spilled to that file instead of blocking checkout, and reach the
+ * handlers later, after events published in the meantime.
+ */
+@Component
+public class OrderEventPipeline {
+
+	private static final long OVERFLOW_IDLE_MILLIS = 100;
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Value("#{systemProperties['webstore.orders.bufferSize'] ?: 1024}")
+	private int bufferSize;
+
+	@Value("#{systemProperties['webstore.orders.waitStrategy'] ?: 'blocking'}")
+	private String waitStrategy;
+
+	@Value("#{systemProperties['webstore.orders.overflowFile'] ?: ''}")
+	private String overflowFile;
+
+	@Autowired(required = false)
+	private List<OrderEventHandler> handlers = new ArrayList<OrderEventHandler>();
+
+	private OrderEventRingBuffer ring;
+	private OrderEventOverflow overflow;
+	private final List<Thread> threads = new ArrayList<Thread>();
+	private volatile boolean running;
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder spilled = new LongAdder();
+	private final LongAdder handlerErrors = new LongAdder();
+
+	@PostConstruct
+	public void start() throws IOException {
+		ring = new OrderEventRingBuffer(bufferSize, WaitStrategy.forName(waitStrategy));
+		running = true;
+		for (OrderEventHandler handler : handlers) {
+			AtomicLong sequence = new AtomicLong(-1);
+			ring.addGatingSequence(sequence);
+			startThread(new Consumer(handler, sequence), "order-events-" + handler.getClass().getSimpleName());
+		}
+		if (!overflowFile.isEmpty()) {
+			File file = new File(overflowFile);
+			if (file.length() > 0) {
+				logger.warn("Discarding " + file.length() + " bytes of order events spilled to " + file + " before a restart");
+			}
+			overflow = new OrderEventOverflow(file);
+			startThread(new Runnable() {
+				@Override
+				public void run() {
+					drainOverflow();
+				}
+			}, "order-events-overflow");
+		}
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		for (Thread thread : threads) {
+			thread.join(1000);
+		}
+		if (overflow != null) {
+			try {
+				overflow.close();
+			} catch (IOException e) {
+				logger.warn("Closing order event overflow failed", e);
+			}
+		}
+	}
+
+	public void publish(String productId, long quantity, BigDecimal unitPrice, long unitsInStock) {
+		if (handlers.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (ring.publish(productId, quantity, unitPrice, unitsInStock, now, overflow == null) >= 0) {
+			published.increment();
+			return;
+		}
+		try {
+			overflow.append(productId, quantity, unitPrice, unitsInStock, now);
+			spilled.increment();
+		} catch (IOException e) {
+			logger.warn("Order event overflow failed, waiting for ring capacity instead", e);
+			ring.publish(productId, quantity, unitPrice, unitsInStock, now, true);
+			published.increment();
+		}
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("published", published.sum());
+		metrics.put("spilled", spilled.sum());
+		metrics.put("handlerErrors", handlerErrors.sum());
+		metrics.put("bufferSize", ring.getBufferSize());
+		metrics.put("remainingCapacity", ring.remainingCapacity());
+		metrics.put("handlers", handlers.size());
+		return metrics;
+	}
+
+	private void startThread(Runnable runnable, String name) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		threads.add(thread);
+		thread.start();
+	}
+
+	private void drainOverflow() {
+		while (running) {
+			try {
+				if (overflow.drainTo(ring) == 0) {
+					Thread.sleep(OVERFLOW_IDLE_MILLIS);
+				} else if (ring.remainingCapacity() == 0) {
+					Thread.sleep(1);
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				logger.warn("Draining order event overflow failed", e);
+			}
+		}
+	}
+
+	private class Consumer implements Runnable {
+		private final OrderEventHandler handler;
+		private final AtomicLong sequence;
+
+		Consumer(OrderEventHandler handler, AtomicLong sequence) {
+			this.handler = handler;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void run() {
+			long next = sequence.get() + 1;
+			while (running || next <= ring.getCursor()) {
+				long available;
+				try {
+					available = ring.waitFor(next);
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (long s = next; s <= available; s++) {
+					try {
+						handler.onEvent(ring.get(s), s, s == available);
+					} catch (Exception e) {
+						handlerErrors.increment();
+						logger.error("Order event handler " + handler.getClass().getSimpleName() + " failed on " + ring.get(s), e);
+					}
+				}
+				if (available >= next) {
+					sequence.set(available);
+					next = available + 1;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.packt.webstore.event;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated multi-producer ring of {@link OrderEvent} slots. Producers
+ * claim a sequence with a CAS and mark the slot published; consumers track
+ * their own sequences, which gate how far producers may wrap.
+ */
+class OrderEventRingBuffer {
+
+	private final OrderEvent[] slots;
+	private final int mask;
+	private final int indexShift;
+	private final AtomicIntegerArray published;
+	private final AtomicLong cursor = new AtomicLong(-1);
+	private final WaitStrategy waitStrategy;
+	private volatile AtomicLong[] gatingSequences = new AtomicLong[0];
+
+	OrderEventRingBuffer(int bufferSize, WaitStrategy waitStrategy) {
+		if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+			throw new IllegalArgumentException("Buffer size must be a power of 2, was " + bufferSize);
+		}
+		this.slots = new OrderEvent[bufferSize];
+		for (int i = 0; i < bufferSize; i++) {
+			slots[i] = new OrderEvent();
+		}
+		this.mask = bufferSize - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+		this.published = new AtomicIntegerArray(bufferSize);
+		for (int i = 0; i < bufferSize; i++) {
+			published.set(i, -1);
+		}
+		this.waitStrategy = waitStrategy;
+	}
+
+	void addGatingSequence(AtomicLong sequence) {
+		AtomicLong[] grown = new AtomicLong[gatingSequences.length + 1];
+		System.arraycopy(gatingSequences, 0, grown, 0, gatingSequences.length);
+		grown[gatingSequences.length] = sequence;
+		gatingSequences = grown;
+	}
+
+	/**
+	 * Claims and publishes one event, waiting for space when the ring is
+	 * full unless {@code waitWhenFull} is false, in which case it returns -1.
+	 */
+	long publish(String productId, long quantity, BigDecimal unitPrice, long unitsInStock, long timestamp,
+			boolean waitWhenFull) {
+		long sequence;
+		while (true) {
+			long current = cursor.get();
+			long next = current + 1;
+			if (next - slots.length > minimumGatingSequence(current)) {
+				if (!waitWhenFull) {
+					return -1;
+				}
+				LockSupport.parkNanos(1000);
+				continue;
+			}
+			if (cursor.compareAndSet(current, next)) {
+				sequence = next;
+				break;
+			}
+		}
+		slots[(int) sequence & mask].set(productId, quantity, unitPrice, unitsInStock, timestamp);
+		published.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+		waitStrategy.signalAllWhenBlocking();
+		return sequence;
+	}
+
+	long waitFor(long sequence) throws InterruptedException {
+		long claimed = waitStrategy.waitFor(sequence, cursor);
+		return highestPublished(sequence, claimed);
+	}
+
+	OrderEvent get(long sequence) {
+		return slots[(int) sequence & mask];
+	}
+
+	long getCursor() {
+		return cursor.get();
+	}
+
+	int getBufferSize() {
+		return slots.length;
+	}
+
+	long remainingCapacity() {
+		long current = cursor.get();
+		return slots.length - (current - minimumGatingSequence(current));
+	}
+
+	private long highestPublished(long lowerBound, long availableSequence) {
+		for (long sequence = lowerBound; sequence <= availableSequence; sequence++) {
+			if (published.get((int) sequence & mask) != (int) (sequence >>> indexShift)) {
+				return sequence - 1;
+			}
+		}
+		return availableSequence;
+	}
+
+	private long minimumGatingSequence(long defaultValue) {
+		long minimum = defaultValue;
+		for (AtomicLong sequence : gatingSequences) {
+			minimum = Math.min(minimum, sequence.get());
+		}
+		return minimum;
+	}
+}
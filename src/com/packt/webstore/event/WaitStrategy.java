@@ -0,0 +1,128 @@
+package com.packt.webstore.event;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * How an idle consumer waits for the producers. Blocking is the cheapest on
+ * CPU, busy spinning has the lowest latency.
+ */
+public abstract class WaitStrategy {
+
+	private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * Waits until the cursor reaches the sequence or about 100ms passed, and
+	 * returns the cursor so callers can recheck whether to keep running.
+	 */
+	abstract long waitFor(long sequence, AtomicLong cursor) throws InterruptedException;
+
+	void signalAllWhenBlocking() {
+	}
+
+	public static WaitStrategy forName(String name) {
+		if ("blocking".equals(name))
+			return new Blocking();
+		if ("sleeping".equals(name))
+			return new Sleeping();
+		if ("yielding".equals(name))
+			return new Yielding();
+		if ("busy-spin".equals(name))
+			return new BusySpin();
+		throw new IllegalArgumentException("Unknown wait strategy " + name
+				+ ", expected blocking, sleeping, yielding or busy-spin");
+	}
+
+	/**
+	 * Producers only take the lock when a consumer is parked. A consumer
+	 * counts itself as waiting before it rechecks the cursor and a producer
+	 * moves the cursor before it reads the count, so at least one of them
+	 * sees the other and no wakeup is lost.
+	 */
+	static class Blocking extends WaitStrategy {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition published = lock.newCondition();
+		private final AtomicInteger waiters = new AtomicInteger();
+
+		@Override
+		long waitFor(long sequence, AtomicLong cursor) throws InterruptedException {
+			long available = cursor.get();
+			if (available >= sequence) {
+				return available;
+			}
+			lock.lock();
+			waiters.incrementAndGet();
+			try {
+				long remaining = MAX_WAIT_NANOS;
+				while ((available = cursor.get()) < sequence && remaining > 0) {
+					remaining = published.awaitNanos(remaining);
+				}
+			} finally {
+				waiters.decrementAndGet();
+				lock.unlock();
+			}
+			return available;
+		}
+
+		@Override
+		void signalAllWhenBlocking() {
+			if (waiters.get() == 0) {
+				return;
+			}
+			lock.lock();
+			try {
+				published.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	static class Sleeping extends WaitStrategy {
+		@Override
+		long waitFor(long sequence, AtomicLong cursor) {
+			long deadline = System.nanoTime() + MAX_WAIT_NANOS;
+			int spins = 200;
+			long available;
+			while ((available = cursor.get()) < sequence && System.nanoTime() < deadline) {
+				if (spins > 100) {
+					spins--;
+				} else if (spins > 0) {
+					spins--;
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(100000);
+				}
+			}
+			return available;
+		}
+	}
+
+	static class Yielding extends WaitStrategy {
+		@Override
+		long waitFor(long sequence, AtomicLong cursor) {
+			long deadline = System.nanoTime() + MAX_WAIT_NANOS;
+			long available;
+			while ((available = cursor.get()) < sequence && System.nanoTime() < deadline) {
+				Thread.yield();
+			}
+			return available;
+		}
+	}
+
+	static class BusySpin extends WaitStrategy {
+		@Override
+		long waitFor(long sequence, AtomicLong cursor) {
+			long deadline = System.nanoTime() + MAX_WAIT_NANOS;
+			long available;
+			while ((available = cursor.get()) < sequence && System.nanoTime() < deadline) {
+				// spin
+			}
+			return available;
+		}
+	}
+}
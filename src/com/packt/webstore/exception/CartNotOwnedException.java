@@ -0,0 +1,25 @@
+package com.packt.webstore.exception;
+
+/**
+ * A request for a cart other than the one the visitor's cart cookie names.
+ */
+public class CartNotOwnedException extends RuntimeException{
+
+	private static final long serialVersionUID = -6129450387765124083L;
+
+	private String cartId;
+
+	public CartNotOwnedException(String cartId){
+		super("Cart " + cartId + " does not belong to this visitor");
+		this.setCartId(cartId);
+	}
+
+	public String getCartId() {
+		return cartId;
+	}
+
+	public void setCartId(String cartId) {
+		this.cartId = cartId;
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.packt.webstore.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value=HttpStatus.GONE, reason="Requested changes are no longer in the log, bootstrap from a snapshot.")
+public class ChangeLogTruncatedException extends RuntimeException{
+
+	private static final long serialVersionUID = 6418207466305318523L;
+
+	private long sequence;
+
+	public ChangeLogTruncatedException(long sequence){
+		this.setSequence(sequence);
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+}
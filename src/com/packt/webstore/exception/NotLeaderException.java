@@ -0,0 +1,25 @@
+package com.packt.webstore.exception;
+
+/**
+ * A catalog change sent to a follower; it has to go to the leader.
+ */
+public class NotLeaderException extends RuntimeException{
+
+	private static final long serialVersionUID = 2883574105870245131L;
+
+	private String leader;
+
+	public NotLeaderException(String leader){
+		super("Catalog is replicated from " + leader + ", send changes to the leader.");
+		this.setLeader(leader);
+	}
+
+	public String getLeader() {
+		return leader;
+	}
+
+	public void setLeader(String leader) {
+		this.leader = leader;
+	}
+
+}
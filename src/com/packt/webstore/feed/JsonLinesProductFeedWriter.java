@@ -0,0 +1,59 @@
+package com.packt.webstore.feed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.packt.webstore.domain.CatalogChange;
+import com.packt.webstore.domain.Product;
+
+/**
+ * One JSON object per line: products for the full feed, changes for an
+ * incremental one. The feed sequence travels in the response header only.
+ */
+class JsonLinesProductFeedWriter implements ProductFeedWriter {
+
+	private final JsonGenerator json;
+	private final ObjectMapper mapper;
+
+	JsonLinesProductFeedWriter(OutputStream out, ObjectMapper mapper) throws IOException {
+		this.mapper = mapper;
+		this.json = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+		this.json.setRootValueSeparator(null);
+	}
+
+	@Override
+	public void startCatalog(long sequence) {
+	}
+
+	@Override
+	public void product(Product product) throws IOException {
+		line(product);
+	}
+
+	@Override
+	public void startChanges(long since, long sequence) {
+	}
+
+	@Override
+	public void change(CatalogChange change) throws IOException {
+		line(change);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		json.flush();
+	}
+
+	@Override
+	public void end() throws IOException {
+		json.flush();
+	}
+
+	private void line(Object value) throws IOException {
+		mapper.writeValue(json, value);
+		json.writeRaw('\n');
+	}
+}
@@ -0,0 +1,138 @@
+package com.packt.webstore.feed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLOutputFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.packt.webstore.domain.CatalogChange;
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.repository.impl.CatalogVersion;
+import com.packt.webstore.domain.repository.impl.OutMemoryProductRepository;
+
+/**
+ * Streams the catalog, or the changes made to it since a given change log
+ * sequence, for partners. The full feed walks one immutable catalog
+ * version and the incremental feed pages through the change log, so memory
+ * use does not grow with the catalog. Every feed carries the sequence to
+ * ask for changes since next time; it is read before the catalog, so a
+ * change can show up in both feeds but never in neither.
+ */
+@Component
+public class ProductFeed {
+
+	public enum Format {
+		XML("application/xml"), JSONL("application/x-ndjson");
+
+		private final String contentType;
+
+		private Format(String contentType) {
+			this.contentType = contentType;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public static Format of(String name) {
+			for (Format format : values()) {
+				if (format.name().equals(name.toUpperCase(Locale.ROOT))) {
+					return format;
+				}
+			}
+			throw new IllegalArgumentException("Unknown feed format " + name);
+		}
+	}
+
+	@Autowired
+	@Qualifier("OutMemory")
+	private OutMemoryProductRepository productRepository;
+
+	@Value("#{systemProperties['webstore.feed.flushEvery'] ?: 100}")
+	private int flushEvery;
+
+	@Value("#{systemProperties['webstore.feed.changesPerPage'] ?: 500}")
+	private int changesPerPage;
+
+	private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+	private final JAXBContext jaxbContext;
+	private final ObjectMapper mapper = new ObjectMapper().disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+	public ProductFeed() throws JAXBException {
+		jaxbContext = JAXBContext.newInstance(Product.class);
+	}
+
+	public long getSequence() {
+		return productRepository.getChangeLog().getLastSequence();
+	}
+
+	/**
+	 * Fails with a ChangeLogTruncatedException while nothing has been written
+	 * yet, so the caller can still answer with a proper status.
+	 */
+	public List<CatalogChange> firstChanges(long since) {
+		return productRepository.getChangeLog().getChangesSince(since, changesPerPage);
+	}
+
+	public void writeCatalog(Format format, long sequence, OutputStream out) throws IOException {
+		CatalogVersion catalog = productRepository.getCatalog();
+		ProductFeedWriter writer = writer(format, out);
+		writer.startCatalog(sequence);
+		for (int i = 0; i < catalog.size(); i++) {
+			writer.product(catalog.get(i));
+			if ((i + 1) % flushEvery == 0) {
+				writer.flush();
+			}
+		}
+		writer.end();
+	}
+
+	/**
+	 * Writes the changes after {@code since} up to {@code sequence}; later
+	 * ones are left for the next pull so the feed always ends. A log that
+	 * wraps around while a slow client is reading ends the stream early
+	 * with an incomplete document.
+	 */
+	public void writeChanges(Format format, long since, long sequence, List<CatalogChange> first, OutputStream out)
+			throws IOException {
+		ProductFeedWriter writer = writer(format, out);
+		writer.startChanges(since, sequence);
+		List<CatalogChange> page = first;
+		long cursor = since;
+		long written = 0;
+		while (!page.isEmpty() && cursor < sequence) {
+			for (CatalogChange change : page) {
+				if (change.getSequence() > sequence) {
+					break;
+				}
+				writer.change(change);
+				cursor = change.getSequence();
+				if (++written % flushEvery == 0) {
+					writer.flush();
+				}
+			}
+			if (cursor < sequence) {
+				page = productRepository.getChangeLog().getChangesSince(cursor, changesPerPage);
+			}
+		}
+		writer.end();
+	}
+
+	private ProductFeedWriter writer(Format format, OutputStream out) throws IOException {
+		if (format == Format.JSONL) {
+			return new JsonLinesProductFeedWriter(out, mapper);
+		}
+		return new XmlProductFeedWriter(out, xmlOutputFactory, jaxbContext);
+	}
+}
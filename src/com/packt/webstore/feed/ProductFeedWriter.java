@@ -0,0 +1,28 @@
+package com.packt.webstore.feed;
+
+import java.io.IOException;
+
+import com.packt.webstore.domain.CatalogChange;
+import com.packt.webstore.domain.Product;
+
+/**
+ * Writes one feed document record by record; nothing but the record being
+ * written is held in memory.
+ */
+interface ProductFeedWriter {
+
+	void startCatalog(long sequence) throws IOException;
+
+	void product(Product product) throws IOException;
+
+	void startChanges(long since, long sequence) throws IOException;
+
+	void change(CatalogChange change) throws IOException;
+
+	/**
+	 * Pushes what was written so far to the client as a chunk.
+	 */
+	void flush() throws IOException;
+
+	void end() throws IOException;
+}
@@ -0,0 +1,115 @@
+package com.packt.webstore.feed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.packt.webstore.domain.CatalogChange;
+import com.packt.webstore.domain.Product;
+
+/**
+ * StAX writer for the XML feed. Products are marshalled one at a time as
+ * fragments, so they look exactly like the XML product view.
+ */
+class XmlProductFeedWriter implements ProductFeedWriter {
+
+	private final OutputStream out;
+	private final XMLStreamWriter xml;
+	private final Marshaller marshaller;
+
+	XmlProductFeedWriter(OutputStream out, XMLOutputFactory factory, JAXBContext context) throws IOException {
+		this.out = out;
+		try {
+			this.xml = factory.createXMLStreamWriter(out, "UTF-8");
+			this.marshaller = context.createMarshaller();
+			this.marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not start the XML feed", e);
+		} catch (JAXBException e) {
+			throw new IOException("Could not start the XML feed", e);
+		}
+	}
+
+	@Override
+	public void startCatalog(long sequence) throws IOException {
+		try {
+			xml.writeStartDocument("UTF-8", "1.0");
+			xml.writeStartElement("products");
+			xml.writeAttribute("sequence", String.valueOf(sequence));
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void product(Product product) throws IOException {
+		try {
+			marshaller.marshal(product, xml);
+		} catch (JAXBException e) {
+			throw new IOException("Could not write product " + product.getProductId(), e);
+		}
+	}
+
+	@Override
+	public void startChanges(long since, long sequence) throws IOException {
+		try {
+			xml.writeStartDocument("UTF-8", "1.0");
+			xml.writeStartElement("changes");
+			xml.writeAttribute("since", String.valueOf(since));
+			xml.writeAttribute("sequence", String.valueOf(sequence));
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void change(CatalogChange change) throws IOException {
+		try {
+			if (change.getProduct() == null) {
+				xml.writeEmptyElement("change");
+			} else {
+				xml.writeStartElement("change");
+			}
+			xml.writeAttribute("sequence", String.valueOf(change.getSequence()));
+			xml.writeAttribute("timestamp", String.valueOf(change.getTimestamp()));
+			xml.writeAttribute("type", change.getType());
+			xml.writeAttribute("productId", change.getProductId());
+			xml.writeAttribute("unitsInStock", String.valueOf(change.getUnitsInStock()));
+			if (change.getProduct() != null) {
+				marshaller.marshal(change.getProduct(), xml);
+				xml.writeEndElement();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} catch (JAXBException e) {
+			throw new IOException("Could not write change " + change.getSequence(), e);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		try {
+			xml.flush();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+		out.flush();
+	}
+
+	@Override
+	public void end() throws IOException {
+		try {
+			xml.writeEndElement();
+			xml.writeEndDocument();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+		flush();
+	}
+}
@@ -0,0 +1,136 @@
+package com.packt.webstore.identity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.packt.webstore.exception.CartNotOwnedException;
+
+/**
+ * Which cart a visitor owns. With {@code webstore.cart.identity=session}
+ * the cart id is the servlet session id, as it always was. With
+ * {@code cookie} it is carried in a signed {@value #COOKIE_NAME} cookie
+ * instead, so anonymous visitors never get an {@link HttpSession} and any
+ * node holding the same {@code webstore.cart.cookieSecret} can serve any
+ * cart request. A cookie that fails the signature check is replaced by a
+ * new cart, and a cart id in a URL is only honoured when the cookie names
+ * it.
+ */
+@Component
+public class CartIdentity {
+
+	public static final String COOKIE_NAME = "WEBSTORE_CART";
+
+	private static final String CART_ID_ATTRIBUTE = CartIdentity.class.getName() + ".cartId";
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Value("#{systemProperties['webstore.cart.identity'] ?: 'session'}")
+	private String mode;
+
+	@Value("#{systemProperties['webstore.cart.cookieSecret'] ?: ''}")
+	private String cookieSecret;
+
+	@Value("#{systemProperties['webstore.cart.cookieMaxAgeDays'] ?: 30}")
+	private int cookieMaxAgeDays;
+
+	private SignedCartId signedIds;
+
+	@PostConstruct
+	public void init() {
+		if ("session".equals(mode)) {
+			return;
+		}
+		if (!"cookie".equals(mode)) {
+			throw new IllegalArgumentException("webstore.cart.identity must be session or cookie, was " + mode);
+		}
+		byte[] secret;
+		if (cookieSecret.isEmpty()) {
+			secret = new byte[32];
+			new SecureRandom().nextBytes(secret);
+			logger.warn("No webstore.cart.cookieSecret set; cart cookies will only be accepted by this node until it restarts");
+		} else {
+			secret = cookieSecret.getBytes(StandardCharsets.UTF_8);
+		}
+		signedIds = new SignedCartId(secret);
+	}
+
+	public boolean isSessionless() {
+		return signedIds != null;
+	}
+
+	/**
+	 * The visitor's cart id, handing out a new one if they have none yet.
+	 */
+	public String cartId(HttpServletRequest request, HttpServletResponse response) {
+		if (!isSessionless()) {
+			return request.getSession().getId();
+		}
+		String cartId = existingCartId(request);
+		if (cartId == null) {
+			String value = signedIds.issue();
+			cartId = SignedCartId.idOf(value);
+			request.setAttribute(CART_ID_ATTRIBUTE, cartId);
+			response.addCookie(cookie(request, value));
+		}
+		return cartId;
+	}
+
+	/**
+	 * The visitor's cart id if they already have one, else null. Never
+	 * creates a session or a cookie; the cookie is checked once per request.
+	 */
+	public String existingCartId(HttpServletRequest request) {
+		if (!isSessionless()) {
+			HttpSession session = request.getSession(false);
+			return session == null ? null : session.getId();
+		}
+		String known = (String) request.getAttribute(CART_ID_ATTRIBUTE);
+		if (known != null) {
+			return known;
+		}
+		Cookie[] cookies = request.getCookies();
+		if (cookies != null) {
+			for (Cookie cookie : cookies) {
+				if (COOKIE_NAME.equals(cookie.getName())) {
+					String cartId = signedIds.verify(cookie.getValue());
+					if (cartId != null) {
+						request.setAttribute(CART_ID_ATTRIBUTE, cartId);
+						return cartId;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Throws {@link CartNotOwnedException} unless the request may act on the
+	 * given cart. With cookie identity that is only the cart the visitor's
+	 * own cookie names; session identity takes the id as given.
+	 */
+	public void checkOwner(HttpServletRequest request, String cartId) {
+		if (isSessionless() && !cartId.equals(existingCartId(request))) {
+			throw new CartNotOwnedException(cartId);
+		}
+	}
+
+	private Cookie cookie(HttpServletRequest request, String value) {
+		Cookie cookie = new Cookie(COOKIE_NAME, value);
+		cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+		cookie.setMaxAge((int) TimeUnit.DAYS.toSeconds(cookieMaxAgeDays));
+		cookie.setHttpOnly(true);
+		cookie.setSecure(request.isSecure());
+		return cookie;
+	}
+}
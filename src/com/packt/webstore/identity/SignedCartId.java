@@ -0,0 +1,87 @@
+package com.packt.webstore.identity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Cart ids of the form {@code id.tag}: 128 random bits and the first 128
+ * bits of their HMAC-SHA256, both base64url encoded, 45 characters in
+ * all. Checking one costs a single HMAC over 22 bytes; each thread keeps
+ * its own {@link Mac} as they are not thread safe.
+ */
+class SignedCartId {
+
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final int ID_BYTES = 16;
+	private static final int TAG_BYTES = 16;
+	private static final int ID_LENGTH = 22;
+	private static final int TAG_LENGTH = 22;
+
+	private final SecureRandom random = new SecureRandom();
+	private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+	private final Base64.Decoder decoder = Base64.getUrlDecoder();
+	private final ThreadLocal<Mac> macs;
+
+	SignedCartId(byte[] secret) {
+		final SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+		macs = new ThreadLocal<Mac>() {
+			@Override
+			protected Mac initialValue() {
+				try {
+					Mac mac = Mac.getInstance(ALGORITHM);
+					mac.init(key);
+					return mac;
+				} catch (GeneralSecurityException e) {
+					throw new IllegalStateException("Cannot sign cart ids with " + ALGORITHM, e);
+				}
+			}
+		};
+		macs.get();
+	}
+
+	/**
+	 * A new signed value; the cart id is the part before the dot.
+	 */
+	String issue() {
+		byte[] id = new byte[ID_BYTES];
+		random.nextBytes(id);
+		String encoded = encoder.encodeToString(id);
+		return encoded + '.' + encoder.encodeToString(tag(encoded));
+	}
+
+	/**
+	 * The cart id of a value this instance issued.
+	 */
+	static String idOf(String issued) {
+		return issued.substring(0, ID_LENGTH);
+	}
+
+	/**
+	 * The cart id carried by a signed value, or null if the value was not
+	 * issued with this secret.
+	 */
+	String verify(String value) {
+		if (value == null || value.length() != ID_LENGTH + 1 + TAG_LENGTH || value.charAt(ID_LENGTH) != '.') {
+			return null;
+		}
+		String id = value.substring(0, ID_LENGTH);
+		byte[] presented;
+		try {
+			presented = decoder.decode(value.substring(ID_LENGTH + 1));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		return MessageDigest.isEqual(presented, tag(id)) ? id : null;
+	}
+
+	private byte[] tag(String id) {
+		return Arrays.copyOf(macs.get().doFinal(id.getBytes(StandardCharsets.UTF_8)), TAG_BYTES);
+	}
+}
@@ -0,0 +1,82 @@
+package com.packt.webstore.interceptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Global in-flight limit that follows observed latency: the limit grows while
+ * latency stays near the best latency seen and shrinks as requests start to
+ * queue, in the spirit of a gradient concurrency limiter.
+ */
+class AdaptiveConcurrencyLimit {
+
+	private static final double SMOOTHING = 0.2;
+	private static final int MIN_LATENCY_RESET_SAMPLES = 10000;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double latencyTolerance;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final ReentrantLock sampleLock = new ReentrantLock();
+
+	private volatile int limit;
+	private double minLatency = Double.MAX_VALUE;
+	private double smoothedLatency;
+	private int samples;
+
+	AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyTolerance = latencyTolerance;
+	}
+
+	boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	void release(long latencyNanos) {
+		inFlight.decrementAndGet();
+		// Samples arriving while another thread updates the limit are dropped
+		// rather than queued behind the lock.
+		if (!sampleLock.tryLock()) {
+			return;
+		}
+		try {
+			onSample(latencyNanos);
+		} finally {
+			sampleLock.unlock();
+		}
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	int getInFlight() {
+		return inFlight.get();
+	}
+
+	private void onSample(long latencyNanos) {
+		if (++samples % MIN_LATENCY_RESET_SAMPLES == 0) {
+			minLatency = smoothedLatency;
+		}
+		minLatency = Math.min(minLatency, latencyNanos);
+		smoothedLatency = smoothedLatency == 0 ? latencyNanos
+				: smoothedLatency * (1 - SMOOTHING) + latencyNanos * SMOOTHING;
+
+		double gradient = Math.max(0.5, Math.min(1.0, latencyTolerance * minLatency / smoothedLatency));
+		double queueAllowance = Math.sqrt(limit);
+		double target = limit * gradient + queueAllowance;
+		int newLimit = (int) (limit * (1 - SMOOTHING) + target * SMOOTHING);
+		limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+	}
+}
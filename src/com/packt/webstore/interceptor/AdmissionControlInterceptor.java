@@ -0,0 +1,284 @@
+package com.packt.webstore.interceptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.packt.webstore.identity.CartIdentity;
+
+/**
+ * Sheds cart and order traffic before it reaches the handlers: a per client
+ * token bucket answers 429 and a latency driven global concurrency limit
+ * answers 503, both with a Retry-After header. Clients are told apart by
+ * their cart, or by their address until they have one; X-Forwarded-For is
+ * only read when the request comes from one of the {@code trustedProxies}.
+ * A second, larger bucket per address caps all carts behind it together,
+ * so a client cannot get a fresh allowance by dropping its cart cookie.
+ * Buckets that refilled completely are evicted in the background; beyond
+ * {@code maxTrackedClients} new carts are only held to their address
+ * bucket, and requests from new addresses are shed with 503.
+ */
+public class AdmissionControlInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String START_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".START";
+	private static final String ADDRESS_KEY_PREFIX = "address ";
+
+	private double ratePerSecond = 10;
+	private int burst = 20;
+	private double addressRatePerSecond = 100;
+	private int addressBurst = 200;
+	private int maxTrackedClients = 100000;
+	private long evictionIntervalMillis = 1000;
+	private int initialLimit = 50;
+	private int minLimit = 4;
+	private int maxLimit = 200;
+	private double latencyTolerance = 2.0;
+	private Set<String> trustedProxies = Collections.emptySet();
+
+	@Autowired
+	private CartIdentity cartIdentity;
+
+	private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+	private ScheduledExecutorService evictor;
+	private volatile AdaptiveConcurrencyLimit concurrencyLimit;
+
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder rateLimited = new LongAdder();
+	private final LongAdder overloaded = new LongAdder();
+	private final LongAdder untracked = new LongAdder();
+
+	@PostConstruct
+	public void start() {
+		evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "admission-evictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		evictor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				evictIdleBuckets(System.nanoTime());
+			}
+		}, evictionIntervalMillis, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		evictor.shutdownNow();
+	}
+
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) throws Exception {
+		long now = System.nanoTime();
+		String address = clientAddress(request);
+		String cartId = cartIdentity.existingCartId(request);
+		TokenBucket addressBucket = bucketFor(ADDRESS_KEY_PREFIX + address, addressRatePerSecond, addressBurst, now);
+		if (addressBucket == null) {
+			untracked.increment();
+			shed(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 1);
+			return false;
+		}
+		long waitNanos = addressBucket.tryAcquire(now);
+		if (waitNanos <= 0) {
+			TokenBucket clientBucket = bucketFor(cartId != null ? cartId : address, ratePerSecond, burst, now);
+			if (clientBucket != null) {
+				waitNanos = clientBucket.tryAcquire(now);
+			} else {
+				untracked.increment();
+			}
+		}
+		if (waitNanos > 0) {
+			rateLimited.increment();
+			shed(response, 429, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+			return false;
+		}
+		if (!getConcurrencyLimit().tryAcquire()) {
+			overloaded.increment();
+			shed(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 1);
+			return false;
+		}
+		admitted.increment();
+		request.setAttribute(START_ATTRIBUTE, now);
+		return true;
+	}
+
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+			Object handler, Exception exception) throws Exception {
+		Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+		if (start != null) {
+			getConcurrencyLimit().release(System.nanoTime() - start);
+		}
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("admitted", admitted.sum());
+		metrics.put("shedRateLimited", rateLimited.sum());
+		metrics.put("shedOverloaded", overloaded.sum());
+		metrics.put("concurrencyLimit", getConcurrencyLimit().getLimit());
+		metrics.put("inFlight", getConcurrencyLimit().getInFlight());
+		metrics.put("trackedClients", buckets.size());
+		metrics.put("untrackedRequests", untracked.sum());
+		return metrics;
+	}
+
+	/**
+	 * The peer address, or when the peer is a trusted proxy the nearest
+	 * X-Forwarded-For entry that is not, since entries left of it can be
+	 * written by the client.
+	 */
+	private String clientAddress(HttpServletRequest request) {
+		String address = request.getRemoteAddr();
+		if (!trustedProxies.contains(address)) {
+			return address;
+		}
+		String forwardedFor = request.getHeader("X-Forwarded-For");
+		if (forwardedFor == null) {
+			return address;
+		}
+		String[] hops = forwardedFor.split(",");
+		for (int i = hops.length - 1; i >= 0; i--) {
+			String hop = hops[i].trim();
+			if (!hop.isEmpty()) {
+				address = hop;
+				if (!trustedProxies.contains(hop)) {
+					break;
+				}
+			}
+		}
+		return address;
+	}
+
+	/**
+	 * The bucket for the key, or null when it has none and no more clients
+	 * can be tracked.
+	 */
+	private TokenBucket bucketFor(String key, double ratePerSecond, int burst, long now) {
+		TokenBucket bucket = buckets.get(key);
+		if (bucket == null) {
+			if (buckets.size() >= maxTrackedClients) {
+				return null;
+			}
+			TokenBucket created = new TokenBucket(ratePerSecond, burst, now);
+			bucket = buckets.putIfAbsent(key, created);
+			if (bucket == null) {
+				bucket = created;
+			}
+		}
+		return bucket;
+	}
+
+	private void evictIdleBuckets(long now) {
+		for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+			if (entry.getValue().isIdle(now)) {
+				buckets.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private AdaptiveConcurrencyLimit getConcurrencyLimit() {
+		AdaptiveConcurrencyLimit limit = concurrencyLimit;
+		if (limit == null) {
+			synchronized (this) {
+				if (concurrencyLimit == null) {
+					concurrencyLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyTolerance);
+				}
+				limit = concurrencyLimit;
+			}
+		}
+		return limit;
+	}
+
+	private void shed(HttpServletResponse response, int status, long retryAfterSeconds) {
+		response.setStatus(status);
+		response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+	}
+
+	public double getRatePerSecond() {
+		return ratePerSecond;
+	}
+	public void setRatePerSecond(double ratePerSecond) {
+		this.ratePerSecond = ratePerSecond;
+	}
+	public int getBurst() {
+		return burst;
+	}
+	public void setBurst(int burst) {
+		this.burst = burst;
+	}
+	public double getAddressRatePerSecond() {
+		return addressRatePerSecond;
+	}
+	public void setAddressRatePerSecond(double addressRatePerSecond) {
+		this.addressRatePerSecond = addressRatePerSecond;
+	}
+	public int getAddressBurst() {
+		return addressBurst;
+	}
+	public void setAddressBurst(int addressBurst) {
+		this.addressBurst = addressBurst;
+	}
+	public int getMaxTrackedClients() {
+		return maxTrackedClients;
+	}
+	public void setMaxTrackedClients(int maxTrackedClients) {
+		this.maxTrackedClients = maxTrackedClients;
+	}
+	public long getEvictionIntervalMillis() {
+		return evictionIntervalMillis;
+	}
+	public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+		this.evictionIntervalMillis = evictionIntervalMillis;
+	}
+	public int getInitialLimit() {
+		return initialLimit;
+	}
+	public void setInitialLimit(int initialLimit) {
+		this.initialLimit = initialLimit;
+	}
+	public int getMinLimit() {
+		return minLimit;
+	}
+	public void setMinLimit(int minLimit) {
+		this.minLimit = minLimit;
+	}
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+	public void setMaxLimit(int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+	public double getLatencyTolerance() {
+		return latencyTolerance;
+	}
+	public void setLatencyTolerance(double latencyTolerance) {
+		this.latencyTolerance = latencyTolerance;
+	}
+	public Set<String> getTrustedProxies() {
+		return trustedProxies;
+	}
+	public void setTrustedProxies(String[] trustedProxies) {
+		this.trustedProxies = new HashSet<String>(Arrays.asList(trustedProxies));
+	}
+}
@@ -1,28 +1,42 @@
 package com.packt.webstore.interceptor;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
+import com.packt.webstore.domain.PromoRedemption;
+import com.packt.webstore.service.PromoCodeService;
+
+/**
+ * Redeems the {@code promo} parameter against the {@link PromoCodeService}.
+ * Only mapped to the promo routes, so other requests never reach it.
+ */
 public class PromoCodeInterceptor extends HandlerInterceptorAdapter {
+	@Autowired
+	private PromoCodeService promoCodeService;
+	
 	private String promoCode;
 	private String errorRedirect;
 	private String offerRedirect;
 	
+	@PostConstruct
+	public void registerPromoCode() {
+		if (promoCode != null && !promoCode.isEmpty()) {
+			promoCodeService.addCode(promoCode, 0, PromoCodeService.UNLIMITED);
+		}
+	}
+	
 	public boolean preHandle(HttpServletRequest request,
 			HttpServletResponse response, Object handler) throws Exception {
-		String givenPromoCode =  request.getParameterValues("promo")==null ? "":request.getParameterValues("promo")[0];
-		if(request.getRequestURI().endsWith("products/specialOffer")){
-			if(givenPromoCode.equals(promoCode)){
-				response.sendRedirect(request.getContextPath()+"/"+ offerRedirect);
-			}else{
-				response.sendRedirect(errorRedirect);
-			}
-			return false;
+		if(promoCodeService.redeem(request.getParameter("promo")) == PromoRedemption.REDEEMED){
+			response.sendRedirect(request.getContextPath()+"/"+ offerRedirect);
+		}else{
+			response.sendRedirect(errorRedirect);
 		}
-		return true;
-
+		return false;
 	}
 	
 	public String getPromoCode() {
@@ -0,0 +1,246 @@
+package com.packt.webstore.interceptor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Measures the CPU time and the bytes allocated by the request thread
+ * between preHandle and afterCompletion and adds them up per handler.
+ * Requests over either threshold are kept in a bounded buffer that
+ * overwrites its oldest entries, so the worst recent offenders can be
+ * looked at without keeping every request.
+ */
+public class ResourceAccountingInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String START_ATTRIBUTE = ResourceAccountingInterceptor.class.getName() + ".START";
+	private static final int THREAD = 0;
+	private static final int WALL = 1;
+	private static final int CPU = 2;
+	private static final int ALLOCATED = 3;
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	private long cpuThresholdMillis = 50;
+	private long allocationThresholdBytes = 10 * 1024 * 1024;
+	private int sampleCapacity = 256;
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final com.sun.management.ThreadMXBean allocations;
+	private final boolean cpuSupported;
+	private final boolean allocationSupported;
+
+	private final ConcurrentMap<String, HandlerUsage> usage = new ConcurrentHashMap<String, HandlerUsage>();
+	private final AtomicLong sampled = new AtomicLong();
+	private volatile AtomicReferenceArray<ResourceSample> samples;
+
+	public ResourceAccountingInterceptor() {
+		cpuSupported = threads.isCurrentThreadCpuTimeSupported();
+		if (cpuSupported && !threads.isThreadCpuTimeEnabled()) {
+			threads.setThreadCpuTimeEnabled(true);
+		}
+		com.sun.management.ThreadMXBean extended = threads instanceof com.sun.management.ThreadMXBean
+				? (com.sun.management.ThreadMXBean) threads : null;
+		allocationSupported = extended != null && extended.isThreadAllocatedMemorySupported();
+		if (allocationSupported && !extended.isThreadAllocatedMemoryEnabled()) {
+			extended.setThreadAllocatedMemoryEnabled(true);
+		}
+		allocations = allocationSupported ? extended : null;
+		if (!cpuSupported || !allocationSupported) {
+			logger.warn("Thread CPU time supported: " + cpuSupported + ", allocation accounting supported: "
+					+ allocationSupported + "; unsupported figures are reported as 0.");
+		}
+	}
+
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) throws Exception {
+		long thread = Thread.currentThread().getId();
+		request.setAttribute(START_ATTRIBUTE, new long[] { thread, System.nanoTime(), cpuTime(), allocated(thread) });
+		return true;
+	}
+
+	/**
+	 * Only counts requests that complete on the thread they started on;
+	 * thread counters say nothing about work done elsewhere.
+	 */
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+			Object handler, Exception exception) throws Exception {
+		long[] start = (long[]) request.getAttribute(START_ATTRIBUTE);
+		long thread = Thread.currentThread().getId();
+		if (start == null || start[THREAD] != thread) {
+			return;
+		}
+		request.removeAttribute(START_ATTRIBUTE);
+		long wallNanos = System.nanoTime() - start[WALL];
+		long cpuNanos = cpuTime() - start[CPU];
+		long allocatedBytes = allocated(thread) - start[ALLOCATED];
+
+		String handlerName = handlerName(handler);
+		usageFor(handlerName).record(wallNanos, cpuNanos, allocatedBytes);
+
+		if (cpuNanos >= TimeUnit.MILLISECONDS.toNanos(cpuThresholdMillis) || allocatedBytes >= allocationThresholdBytes) {
+			AtomicReferenceArray<ResourceSample> buffer = getSamples();
+			long slot = sampled.getAndIncrement();
+			buffer.set((int) (slot % buffer.length()), new ResourceSample(System.currentTimeMillis(), handlerName,
+					request.getRequestURI(), response.getStatus(), TimeUnit.NANOSECONDS.toMicros(wallNanos),
+					TimeUnit.NANOSECONDS.toMicros(cpuNanos), allocatedBytes));
+		}
+	}
+
+	/**
+	 * Totals and averages per handler, sorted by handler name.
+	 */
+	public Map<String, Map<String, Object>> getUsage() {
+		Map<String, Map<String, Object>> byHandler = new TreeMap<String, Map<String, Object>>();
+		for (Map.Entry<String, HandlerUsage> entry : usage.entrySet()) {
+			byHandler.put(entry.getKey(), entry.getValue().toMap());
+		}
+		return byHandler;
+	}
+
+	/**
+	 * Retained samples, newest first.
+	 */
+	public List<ResourceSample> getSampledRequests() {
+		AtomicReferenceArray<ResourceSample> buffer = getSamples();
+		long last = sampled.get();
+		long first = Math.max(0, last - buffer.length());
+		List<ResourceSample> recent = new ArrayList<ResourceSample>();
+		for (long slot = last - 1; slot >= first; slot--) {
+			ResourceSample sample = buffer.get((int) (slot % buffer.length()));
+			if (sample != null) {
+				recent.add(sample);
+			}
+		}
+		return recent;
+	}
+
+	public Map<String, Object> getSettings() {
+		Map<String, Object> settings = new LinkedHashMap<String, Object>();
+		settings.put("cpuTimeSupported", cpuSupported);
+		settings.put("allocationSupported", allocationSupported);
+		settings.put("cpuThresholdMillis", cpuThresholdMillis);
+		settings.put("allocationThresholdBytes", allocationThresholdBytes);
+		settings.put("sampleCapacity", sampleCapacity);
+		settings.put("sampledRequests", sampled.get());
+		return settings;
+	}
+
+	private long cpuTime() {
+		return cpuSupported ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	private long allocated(long thread) {
+		return allocationSupported ? allocations.getThreadAllocatedBytes(thread) : 0;
+	}
+
+	private static String handlerName(Object handler) {
+		if (handler instanceof HandlerMethod) {
+			HandlerMethod method = (HandlerMethod) handler;
+			return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+		}
+		return handler == null ? "unknown" : handler.getClass().getSimpleName();
+	}
+
+	private HandlerUsage usageFor(String handlerName) {
+		HandlerUsage handlerUsage = usage.get(handlerName);
+		if (handlerUsage == null) {
+			HandlerUsage created = new HandlerUsage();
+			handlerUsage = usage.putIfAbsent(handlerName, created);
+			if (handlerUsage == null) {
+				handlerUsage = created;
+			}
+		}
+		return handlerUsage;
+	}
+
+	private AtomicReferenceArray<ResourceSample> getSamples() {
+		AtomicReferenceArray<ResourceSample> buffer = samples;
+		if (buffer == null) {
+			synchronized (this) {
+				if (samples == null) {
+					samples = new AtomicReferenceArray<ResourceSample>(Math.max(1, sampleCapacity));
+				}
+				buffer = samples;
+			}
+		}
+		return buffer;
+	}
+
+	private static class HandlerUsage {
+		private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+			@Override
+			public long applyAsLong(long left, long right) {
+				return Math.max(left, right);
+			}
+		};
+
+		private final LongAdder requests = new LongAdder();
+		private final LongAdder wallNanos = new LongAdder();
+		private final LongAdder cpuNanos = new LongAdder();
+		private final LongAdder allocatedBytes = new LongAdder();
+		private final LongAccumulator maxCpuNanos = new LongAccumulator(MAX, 0);
+		private final LongAccumulator maxAllocatedBytes = new LongAccumulator(MAX, 0);
+
+		void record(long wall, long cpu, long allocated) {
+			requests.increment();
+			wallNanos.add(wall);
+			cpuNanos.add(cpu);
+			allocatedBytes.add(allocated);
+			maxCpuNanos.accumulate(cpu);
+			maxAllocatedBytes.accumulate(allocated);
+		}
+
+		Map<String, Object> toMap() {
+			long count = Math.max(1, requests.sum());
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			map.put("requests", requests.sum());
+			map.put("avgWallMicros", TimeUnit.NANOSECONDS.toMicros(wallNanos.sum() / count));
+			map.put("avgCpuMicros", TimeUnit.NANOSECONDS.toMicros(cpuNanos.sum() / count));
+			map.put("avgAllocatedBytes", allocatedBytes.sum() / count);
+			map.put("maxCpuMicros", TimeUnit.NANOSECONDS.toMicros(maxCpuNanos.get()));
+			map.put("maxAllocatedBytes", maxAllocatedBytes.get());
+			map.put("totalCpuMillis", TimeUnit.NANOSECONDS.toMillis(cpuNanos.sum()));
+			map.put("totalAllocatedBytes", allocatedBytes.sum());
+			return map;
+		}
+	}
+
+	public long getCpuThresholdMillis() {
+		return cpuThresholdMillis;
+	}
+	public void setCpuThresholdMillis(long cpuThresholdMillis) {
+		this.cpuThresholdMillis = cpuThresholdMillis;
+	}
+	public long getAllocationThresholdBytes() {
+		return allocationThresholdBytes;
+	}
+	public void setAllocationThresholdBytes(long allocationThresholdBytes) {
+		this.allocationThresholdBytes = allocationThresholdBytes;
+	}
+	public int getSampleCapacity() {
+		return sampleCapacity;
+	}
+	public void setSampleCapacity(int sampleCapacity) {
+		this.sampleCapacity = sampleCapacity;
+	}
+}
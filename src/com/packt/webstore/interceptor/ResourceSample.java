@@ -0,0 +1,62 @@
+package com.packt.webstore.interceptor;
+
+/**
+ * Resource breakdown of one request that went over a threshold.
+ */
+public class ResourceSample {
+
+	private final long timestamp;
+	private final String handler;
+	private final String path;
+	private final int status;
+	private final long wallMicros;
+	private final long cpuMicros;
+	private final long allocatedBytes;
+
+	public ResourceSample(long timestamp, String handler, String path, int status,
+			long wallMicros, long cpuMicros, long allocatedBytes) {
+		this.timestamp = timestamp;
+		this.handler = handler;
+		this.path = path;
+		this.status = status;
+		this.wallMicros = wallMicros;
+		this.cpuMicros = cpuMicros;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public String getHandler() {
+		return handler;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public long getWallMicros() {
+		return wallMicros;
+	}
+
+	public long getCpuMicros() {
+		return cpuMicros;
+	}
+
+	/**
+	 * Time spent neither on CPU nor accounted for by it, i.e. blocked or
+	 * waiting to be scheduled.
+	 */
+	public long getOffCpuMicros() {
+		return Math.max(0, wallMicros - cpuMicros);
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+}
@@ -0,0 +1,104 @@
+package com.packt.webstore.interceptor;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.packt.webstore.cache.CachedResponse;
+import com.packt.webstore.cache.SerializedResponseCache;
+import com.packt.webstore.service.ProductService;
+
+/**
+ * Answers JSON and XML catalog requests from the {@link SerializedResponseCache}
+ * before the controller runs. On a miss the request is marked so that the
+ * caching view stores what it renders, but only once the handler returned
+ * normally; error pages are never cached.
+ */
+public class ResponseCacheInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String KEY_ATTRIBUTE = ResponseCacheInterceptor.class.getName() + ".KEY";
+	private static final String HANDLED_ATTRIBUTE = ResponseCacheInterceptor.class.getName() + ".HANDLED";
+
+	@Autowired
+	private SerializedResponseCache responseCache;
+
+	@Autowired
+	private ProductService productService;
+
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) throws Exception {
+		if (!"GET".equals(request.getMethod())) {
+			return true;
+		}
+		MediaType mediaType = requestedMediaType(request);
+		if (mediaType == null) {
+			return true;
+		}
+		String query = request.getQueryString();
+		SerializedResponseCache.Key key = new SerializedResponseCache.Key(mediaType,
+				request.getRequestURI() + (query == null ? "" : "?" + query), productService.getCatalogVersion());
+		CachedResponse cached = responseCache.get(key);
+		if (cached != null) {
+			cached.writeTo(request, response);
+			return false;
+		}
+		request.setAttribute(KEY_ATTRIBUTE, key);
+		return true;
+	}
+
+	public void postHandle(HttpServletRequest request, HttpServletResponse response,
+			Object handler, ModelAndView modelAndView) throws Exception {
+		if (request.getAttribute(KEY_ATTRIBUTE) != null) {
+			request.setAttribute(HANDLED_ATTRIBUTE, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * The key to store the rendered response under, or null when this
+	 * request must not be cached.
+	 */
+	public static SerializedResponseCache.Key cacheableKey(HttpServletRequest request) {
+		if (request.getAttribute(HANDLED_ATTRIBUTE) == null) {
+			return null;
+		}
+		return (SerializedResponseCache.Key) request.getAttribute(KEY_ATTRIBUTE);
+	}
+
+	/**
+	 * JSON or XML when the Accept header, which is what the view resolver
+	 * negotiates on, clearly asks for it; null whenever the HTML page could
+	 * be chosen instead.
+	 */
+	private static MediaType requestedMediaType(HttpServletRequest request) {
+		String accept = request.getHeader("Accept");
+		if (accept == null) {
+			return null;
+		}
+		List<MediaType> accepted;
+		try {
+			accepted = MediaType.parseMediaTypes(accept);
+		} catch (InvalidMediaTypeException e) {
+			return null;
+		}
+		MediaType.sortBySpecificityAndQuality(accepted);
+		for (MediaType mediaType : accepted) {
+			if (mediaType.isWildcardType() || mediaType.isWildcardSubtype() || MediaType.TEXT_HTML.includes(mediaType)) {
+				return null;
+			}
+			if (MediaType.APPLICATION_JSON.includes(mediaType)) {
+				return MediaType.APPLICATION_JSON;
+			}
+			if (MediaType.APPLICATION_XML.includes(mediaType)) {
+				return MediaType.APPLICATION_XML;
+			}
+		}
+		return null;
+	}
+}
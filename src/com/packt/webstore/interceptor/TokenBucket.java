@@ -0,0 +1,44 @@
+package com.packt.webstore.interceptor;
+
+/**
+ * Refilling token bucket for a single client key. Every key has its own
+ * bucket and lock, so clients never contend with each other.
+ */
+class TokenBucket {
+
+	private final double ratePerNano;
+	private final double capacity;
+	private double tokens;
+	private long lastRefill;
+
+	TokenBucket(double ratePerSecond, double capacity, long now) {
+		this.ratePerNano = ratePerSecond / 1e9;
+		this.capacity = capacity;
+		this.tokens = capacity;
+		this.lastRefill = now;
+	}
+
+	/**
+	 * Takes a token, or returns how many nanos until one is available.
+	 */
+	synchronized long tryAcquire(long now) {
+		refill(now);
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return (long) Math.ceil((1 - tokens) / ratePerNano);
+	}
+
+	synchronized boolean isIdle(long now) {
+		refill(now);
+		return tokens >= capacity;
+	}
+
+	private void refill(long now) {
+		if (now > lastRefill) {
+			tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+			lastRefill = now;
+		}
+	}
+}
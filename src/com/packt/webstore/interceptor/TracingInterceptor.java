@@ -0,0 +1,65 @@
+package com.packt.webstore.interceptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.packt.webstore.tracing.Tracer;
+
+/**
+ * Opens the root span of a sampled request and hands the finished trace to
+ * the {@link Tracer}. Honours the B3 {@code X-B3-Sampled},
+ * {@code X-B3-TraceId} and {@code X-B3-SpanId} headers only when the peer
+ * is one of the {@code trustedCallers}; anyone else could otherwise force
+ * every request they send to be traced.
+ */
+public class TracingInterceptor extends HandlerInterceptorAdapter {
+
+	@Autowired
+	private Tracer tracer;
+
+	private Set<String> trustedCallers = Collections.emptySet();
+
+	public boolean preHandle(HttpServletRequest request,
+			HttpServletResponse response, Object handler) throws Exception {
+		if (tracer.isEnabled()) {
+			if (trustedCallers.contains(request.getRemoteAddr())) {
+				tracer.startTrace(spanName(request, handler), request.getHeader("X-B3-Sampled"),
+						request.getHeader("X-B3-TraceId"), request.getHeader("X-B3-SpanId"));
+			} else {
+				tracer.startTrace(spanName(request, handler), null, null, null);
+			}
+		}
+		return true;
+	}
+
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+			Object handler, Exception exception) throws Exception {
+		if (tracer.isEnabled()) {
+			tracer.finishTrace();
+		}
+	}
+
+	private static String spanName(HttpServletRequest request, Object handler) {
+		if (handler instanceof HandlerMethod) {
+			HandlerMethod method = (HandlerMethod) handler;
+			return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+		}
+		return request.getMethod() + " " + request.getRequestURI();
+	}
+
+	public Set<String> getTrustedCallers() {
+		return trustedCallers;
+	}
+	public void setTrustedCallers(String[] trustedCallers) {
+		this.trustedCallers = new HashSet<String>(Arrays.asList(trustedCallers));
+	}
+}
@@ -0,0 +1,27 @@
+package com.packt.webstore.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.packt.webstore.CartMutation")
+@Label("Cart Mutation")
+@Category({ "Webstore", "Cart" })
+@Description("Creation, update or removal of a cart")
+@Enabled(false)
+@StackTrace(false)
+public class CartMutationEvent extends Event {
+
+	@Label("Operation")
+	public String operation;
+
+	@Label("Cart Id")
+	public String cartId;
+
+	@Label("Line Items")
+	public int lineItems;
+}
@@ -0,0 +1,27 @@
+package com.packt.webstore.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.packt.webstore.FilterEvaluation")
+@Label("Filter Evaluation")
+@Category({ "Webstore", "Catalog" })
+@Description("Category, filter or query evaluation over the catalog")
+@Enabled(false)
+@StackTrace(false)
+public class FilterEvaluationEvent extends Event {
+
+	@Label("Operation")
+	public String operation;
+
+	@Label("Criteria")
+	public String criteria;
+
+	@Label("Result Size")
+	public int resultSize;
+}
@@ -0,0 +1,26 @@
+package com.packt.webstore.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.packt.webstore.ImageUpload")
+@Label("Image Upload")
+@Category({ "Webstore", "Catalog" })
+@Description("Transfer of an uploaded product image to disk")
+@Enabled(false)
+@StackTrace(false)
+public class ImageUploadEvent extends Event {
+
+	@Label("Product Id")
+	public String productId;
+
+	@Label("Size")
+	@DataAmount
+	public long size;
+}
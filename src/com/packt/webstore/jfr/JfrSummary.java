@@ -0,0 +1,127 @@
+package com.packt.webstore.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Summarizes the webstore events of a {@code .jfr} recording by operation:
+ * count, latency percentiles and, where the event carries one, the average
+ * result size.
+ *
+ * <pre>
+ * java -cp WEB-INF/classes com.packt.webstore.jfr.JfrSummary webstore.jfr
+ * </pre>
+ */
+public class JfrSummary {
+
+	private static final String EVENT_PREFIX = "com.packt.webstore.";
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: JfrSummary <recording.jfr>");
+			System.exit(2);
+		}
+		Map<String, Operation> operations = summarize(Paths.get(args[0]));
+		System.out.println(String.format("%-36s %8s %10s %10s %10s %10s %10s %10s", "operation", "count",
+				"total ms", "avg us", "p50 us", "p99 us", "max us", "avg size"));
+		for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+			Operation operation = entry.getValue();
+			System.out.println(String.format("%-36s %8d %10.1f %10d %10d %10d %10d %10s", entry.getKey(),
+					operation.count, operation.totalMicros / 1000.0, operation.totalMicros / operation.count,
+					operation.percentile(0.50), operation.percentile(0.99), operation.percentile(1.0),
+					operation.sizes == 0 ? "-" : String.format("%.1f", (double) operation.sizeTotal / operation.sizes)));
+		}
+	}
+
+	public static Map<String, Operation> summarize(Path recording) throws IOException {
+		Map<String, Operation> operations = new TreeMap<String, Operation>();
+		RecordingFile file = new RecordingFile(recording);
+		try {
+			while (file.hasMoreEvents()) {
+				RecordedEvent event = file.readEvent();
+				String type = event.getEventType().getName();
+				if (!type.startsWith(EVENT_PREFIX)) {
+					continue;
+				}
+				String name = type.substring(EVENT_PREFIX.length()) + qualifier(event);
+				Operation operation = operations.get(name);
+				if (operation == null) {
+					operation = new Operation();
+					operations.put(name, operation);
+				}
+				operation.add(event.getDuration().toNanos() / 1000, size(event));
+			}
+		} finally {
+			file.close();
+		}
+		return operations;
+	}
+
+	private static String qualifier(RecordedEvent event) {
+		if (event.hasField("operation")) {
+			return "/" + event.getString("operation");
+		}
+		if (event.hasField("accepted")) {
+			return event.getBoolean("accepted") ? "/accepted" : "/rejected";
+		}
+		if (event.hasField("found")) {
+			return event.getBoolean("found") ? "/found" : "/missing";
+		}
+		return "";
+	}
+
+	private static long size(RecordedEvent event) {
+		if (event.hasField("resultSize")) {
+			return event.getInt("resultSize");
+		}
+		if (event.hasField("lineItems")) {
+			return event.getInt("lineItems");
+		}
+		if (event.hasField("size")) {
+			return event.getLong("size");
+		}
+		return -1;
+	}
+
+	public static class Operation {
+		private long count;
+		private long totalMicros;
+		private long sizes;
+		private long sizeTotal;
+		private long[] micros = new long[64];
+		private boolean sorted;
+
+		void add(long durationMicros, long size) {
+			if (count == micros.length) {
+				micros = Arrays.copyOf(micros, micros.length * 2);
+			}
+			micros[(int) count++] = durationMicros;
+			totalMicros += durationMicros;
+			sorted = false;
+			if (size >= 0) {
+				sizes++;
+				sizeTotal += size;
+			}
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long percentile(double fraction) {
+			if (!sorted) {
+				Arrays.sort(micros, 0, (int) count);
+				sorted = true;
+			}
+			int index = (int) Math.ceil(fraction * count) - 1;
+			return micros[Math.max(0, Math.min((int) count - 1, index))];
+		}
+	}
+}
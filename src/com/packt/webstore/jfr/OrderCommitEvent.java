@@ -0,0 +1,30 @@
+package com.packt.webstore.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.packt.webstore.OrderCommit")
+@Label("Order Commit")
+@Category({ "Webstore", "Order" })
+@Description("Stock check and stock update of an order")
+@Enabled(false)
+@StackTrace(false)
+public class OrderCommitEvent extends Event {
+
+	@Label("Product Id")
+	public String productId;
+
+	@Label("Quantity")
+	public long quantity;
+
+	@Label("Units In Stock")
+	public long unitsInStock;
+
+	@Label("Accepted")
+	public boolean accepted;
+}
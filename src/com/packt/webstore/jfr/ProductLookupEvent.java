@@ -0,0 +1,24 @@
+package com.packt.webstore.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.packt.webstore.ProductLookup")
+@Label("Product Lookup")
+@Category({ "Webstore", "Catalog" })
+@Description("Lookup of a single product by id")
+@Enabled(false)
+@StackTrace(false)
+public class ProductLookupEvent extends Event {
+
+	@Label("Product Id")
+	public String productId;
+
+	@Label("Found")
+	public boolean found;
+}
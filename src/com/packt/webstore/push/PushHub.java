@@ -0,0 +1,294 @@
+package com.packt.webstore.push;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.packt.webstore.domain.Cart;
+import com.packt.webstore.domain.CompactCart;
+import com.packt.webstore.event.OrderEvent;
+import com.packt.webstore.event.OrderEventHandler;
+
+/**
+ * Fans cart and stock changes out to Server-Sent Event streams. Streams are
+ * parked async requests, so an idle subscriber costs a map entry and no
+ * thread. Changes are only recorded for carts and products somebody is
+ * watching, and only the latest state per cart or product is kept until
+ * the next flush, so a burst of orders becomes one stock event. Writes
+ * never block the hub thread; a subscriber that stops reading is dropped
+ * once it has too many frames waiting or has not been writable for too long.
+ */
+@Component
+public class PushHub implements OrderEventHandler {
+
+	private static final long RETRY_MILLIS = 3000;
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Value("#{systemProperties['webstore.push.coalesceMillis'] ?: 250}")
+	private long coalesceMillis;
+
+	@Value("#{systemProperties['webstore.push.heartbeatSeconds'] ?: 15}")
+	private long heartbeatSeconds;
+
+	@Value("#{systemProperties['webstore.push.timeoutMillis'] ?: 300000}")
+	private long timeoutMillis;
+
+	@Value("#{systemProperties['webstore.push.maxSubscribers'] ?: 10000}")
+	private int maxSubscribers;
+
+	@Value("#{systemProperties['webstore.push.maxPendingFrames'] ?: 64}")
+	private int maxPendingFrames;
+
+	@Value("#{systemProperties['webstore.push.writeTimeoutMillis'] ?: 10000}")
+	private long writeTimeoutMillis;
+
+	private final ConcurrentMap<String, Set<PushSubscriber>> byProduct = new ConcurrentHashMap<String, Set<PushSubscriber>>();
+	private final ConcurrentMap<String, Set<PushSubscriber>> byCart = new ConcurrentHashMap<String, Set<PushSubscriber>>();
+	private final Set<PushSubscriber> subscribers = Collections.newSetFromMap(new ConcurrentHashMap<PushSubscriber, Boolean>());
+	private final AtomicInteger subscriberCount = new AtomicInteger();
+
+	private final ConcurrentMap<String, Long> pendingStock = new ConcurrentHashMap<String, Long>();
+	private final ConcurrentMap<String, CompactCart> pendingCarts = new ConcurrentHashMap<String, CompactCart>();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private ScheduledExecutorService flusher;
+
+	private final LongAdder pushed = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	@PostConstruct
+	public void start() {
+		flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "push-hub");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		flusher.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, coalesceMillis, coalesceMillis, TimeUnit.MILLISECONDS);
+		flusher.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				heartbeat();
+			}
+		}, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		flusher.shutdown();
+		flusher.awaitTermination(1, TimeUnit.SECONDS);
+		for (PushSubscriber subscriber : subscribers) {
+			subscriber.close();
+		}
+	}
+
+	/**
+	 * Parks the request as an event stream for the given cart and products.
+	 * Returns false, leaving the request untouched, when the hub is full.
+	 */
+	public boolean subscribe(AsyncContext context, String cartId, Collection<String> productIds) {
+		if (subscriberCount.incrementAndGet() > maxSubscribers) {
+			subscriberCount.decrementAndGet();
+			return false;
+		}
+		final PushSubscriber subscriber = new PushSubscriber(context, cartId, new LinkedHashSet<String>(productIds));
+		context.setTimeout(timeoutMillis);
+		context.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				unsubscribe(subscriber);
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				subscriber.close();
+				unsubscribe(subscriber);
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				subscriber.markClosed();
+				unsubscribe(subscriber);
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+		subscribers.add(subscriber);
+		if (cartId != null) {
+			register(byCart, cartId, subscriber);
+		}
+		for (String productId : subscriber.getProductIds()) {
+			register(byProduct, productId, subscriber);
+		}
+		if (!subscriber.offer(PushSubscriber.retry(RETRY_MILLIS))) {
+			unsubscribe(subscriber);
+		}
+		return true;
+	}
+
+	public void stockChanged(String productId, long unitsInStock) {
+		if (byProduct.containsKey(productId) && pendingStock.put(productId, unitsInStock) != null) {
+			coalesced.increment();
+		}
+	}
+
+	public void cartChanged(String cartId, Cart cart) {
+		if (byCart.containsKey(cartId) && pendingCarts.put(cartId, new CompactCart(cart)) != null) {
+			coalesced.increment();
+		}
+	}
+
+	public void cartDeleted(String cartId) {
+		cartChanged(cartId, new Cart(cartId));
+	}
+
+	@Override
+	public void onEvent(OrderEvent event, long sequence, boolean endOfBatch) {
+		stockChanged(event.getProductId(), event.getUnitsInStock());
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("subscribers", subscriberCount.get());
+		metrics.put("watchedProducts", byProduct.size());
+		metrics.put("watchedCarts", byCart.size());
+		metrics.put("pushedEvents", pushed.sum());
+		metrics.put("coalescedChanges", coalesced.sum());
+		metrics.put("droppedSlowSubscribers", dropped.sum());
+		return metrics;
+	}
+
+	private void flush() {
+		try {
+			for (String productId : new ArrayList<String>(pendingStock.keySet())) {
+				Long unitsInStock = pendingStock.remove(productId);
+				if (unitsInStock != null) {
+					Map<String, Object> stock = new LinkedHashMap<String, Object>();
+					stock.put("productId", productId);
+					stock.put("unitsInStock", unitsInStock);
+					send(byProduct.get(productId), "stock", mapper.writeValueAsString(stock));
+				}
+			}
+			for (String cartId : new ArrayList<String>(pendingCarts.keySet())) {
+				CompactCart cart = pendingCarts.remove(cartId);
+				if (cart != null) {
+					send(byCart.get(cartId), "cart", mapper.writeValueAsString(cart));
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Could not serialize a push event", e);
+		} catch (RuntimeException e) {
+			logger.error("Push flush failed", e);
+		}
+	}
+
+	private void send(Set<PushSubscriber> targets, String event, String data) {
+		if (targets == null) {
+			return;
+		}
+		String frame = PushSubscriber.event(event, data);
+		for (PushSubscriber subscriber : targets) {
+			if (push(subscriber, frame)) {
+				pushed.increment();
+			}
+		}
+	}
+
+	private void heartbeat() {
+		for (PushSubscriber subscriber : subscribers) {
+			push(subscriber, PushSubscriber.PING);
+		}
+	}
+
+	private boolean push(PushSubscriber subscriber, String frame) {
+		if (subscriber.isLagging(maxPendingFrames, TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis))) {
+			logger.warn("Dropping a push subscriber that stopped reading");
+			dropped.increment();
+			subscriber.close();
+			unsubscribe(subscriber);
+			return false;
+		}
+		if (!subscriber.offer(frame)) {
+			unsubscribe(subscriber);
+			return false;
+		}
+		return true;
+	}
+
+	private void unsubscribe(PushSubscriber subscriber) {
+		if (!subscribers.remove(subscriber)) {
+			return;
+		}
+		subscriberCount.decrementAndGet();
+		if (subscriber.getCartId() != null) {
+			unregister(byCart, subscriber.getCartId(), subscriber);
+		}
+		for (String productId : subscriber.getProductIds()) {
+			unregister(byProduct, productId, subscriber);
+		}
+	}
+
+	private static void register(ConcurrentMap<String, Set<PushSubscriber>> index, String key, PushSubscriber subscriber) {
+		while (true) {
+			Set<PushSubscriber> set = index.get(key);
+			if (set == null) {
+				Set<PushSubscriber> created = Collections.newSetFromMap(new ConcurrentHashMap<PushSubscriber, Boolean>());
+				set = index.putIfAbsent(key, created);
+				if (set == null) {
+					set = created;
+				}
+			}
+			set.add(subscriber);
+			if (index.get(key) == set) {
+				return;
+			}
+			// raced with the removal of an empty set, add to its replacement
+			set.remove(subscriber);
+		}
+	}
+
+	private static void unregister(ConcurrentMap<String, Set<PushSubscriber>> index, String key, PushSubscriber subscriber) {
+		Set<PushSubscriber> set = index.get(key);
+		if (set != null) {
+			set.remove(subscriber);
+			if (set.isEmpty()) {
+				index.remove(key, set);
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.packt.webstore.push;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * One open event stream. Holds no thread and never blocks one: output is
+ * non-blocking, frames the connection cannot take yet wait in a queue and
+ * are written out when the container reports it writable again, so a slow
+ * client only ever costs its own queue.
+ */
+class PushSubscriber implements WriteListener {
+
+	static final String PING = ": ping\n\n";
+
+	private final AsyncContext context;
+	private final String cartId;
+	private final Set<String> productIds;
+	private final Queue<byte[]> pending = new ArrayDeque<byte[]>();
+	private ServletOutputStream out;
+	private long waitingSince;
+	private boolean closed;
+
+	PushSubscriber(AsyncContext context, String cartId, Set<String> productIds) {
+		this.context = context;
+		this.cartId = cartId;
+		this.productIds = productIds;
+	}
+
+	static String retry(long retryMillis) {
+		return "retry: " + retryMillis + "\n\n";
+	}
+
+	static String event(String event, String data) {
+		return "event: " + event + "\ndata: " + data + "\n\n";
+	}
+
+	String getCartId() {
+		return cartId;
+	}
+
+	Set<String> getProductIds() {
+		return productIds;
+	}
+
+	/**
+	 * Whether the client has fallen behind: it has the given number of
+	 * frames waiting, or has not been writable for the given time.
+	 */
+	synchronized boolean isLagging(int maxPending, long maxWaitNanos) {
+		return !closed && (pending.size() >= maxPending
+				|| (waitingSince != 0 && System.nanoTime() - waitingSince > maxWaitNanos));
+	}
+
+	/**
+	 * Queues a frame and writes as much as the connection takes without
+	 * blocking; false once the client is gone, in which case the stream is
+	 * completed.
+	 */
+	synchronized boolean offer(String frame) {
+		if (closed) {
+			return false;
+		}
+		pending.add(frame.getBytes(StandardCharsets.UTF_8));
+		return drain();
+	}
+
+	@Override
+	public synchronized void onWritePossible() {
+		if (!closed) {
+			drain();
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		close();
+	}
+
+	private boolean drain() {
+		try {
+			if (out == null) {
+				out = context.getResponse().getOutputStream();
+				out.setWriteListener(this);
+			}
+			while (!pending.isEmpty() && out.isReady()) {
+				out.write(pending.poll());
+			}
+			if (pending.isEmpty()) {
+				waitingSince = 0;
+				if (out.isReady()) {
+					out.flush();
+				}
+			} else if (waitingSince == 0) {
+				waitingSince = System.nanoTime();
+			}
+			return true;
+		} catch (IOException e) {
+			// client went away
+		} catch (IllegalStateException e) {
+			// the container already ended the request
+		}
+		close();
+		return false;
+	}
+
+	synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		pending.clear();
+		try {
+			context.complete();
+		} catch (IllegalStateException e) {
+			// already completed or timed out by the container
+		}
+	}
+
+	synchronized void markClosed() {
+		closed = true;
+		pending.clear();
+	}
+}
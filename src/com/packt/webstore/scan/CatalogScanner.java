@@ -0,0 +1,179 @@
+package com.packt.webstore.scan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.repository.impl.CatalogVersion;
+import com.packt.webstore.domain.repository.impl.OutMemoryProductRepository;
+
+/**
+ * Answers the catalog queries no index can: every product of one catalog
+ * version is checked against a {@link ProductPredicate}. The catalog is cut
+ * into segments of {@code segmentSize} products which are scanned in
+ * parallel on a pool of their own, so a large scan uses every core without
+ * taking threads from the request pool. Segments are joined in catalog
+ * order, each fork merging its own two halves, so no lock is shared.
+ * <p>
+ * A limit query stops starting new segments once enough products were
+ * found. It returns matches in catalog order, but which matches it
+ * returns depends on how the segments were scheduled.
+ */
+@Component
+public class CatalogScanner {
+
+	public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+	@Autowired
+	@Qualifier("OutMemory")
+	private OutMemoryProductRepository productRepository;
+
+	@Value("#{systemProperties['webstore.scan.parallelism'] ?: 0}")
+	private int parallelism;
+
+	@Value("#{systemProperties['webstore.scan.segmentSize'] ?: 1024}")
+	private int segmentSize;
+
+	private ForkJoinPool pool;
+
+	private final LongAdder scans = new LongAdder();
+	private final LongAdder segmentsScanned = new LongAdder();
+	private final LongAdder segmentsSkipped = new LongAdder();
+
+	@PostConstruct
+	public void start() {
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("webstore.scan.segmentSize must be positive, was " + segmentSize);
+		}
+		int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			@Override
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("catalog-scan-" + thread.getPoolIndex());
+				return thread;
+			}
+		}, null, false);
+	}
+
+	@PreDestroy
+	public void stop() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Up to {@code limit} products matching the predicate, in catalog order;
+	 * {@link #NO_LIMIT} returns them all.
+	 */
+	public List<Product> scan(ProductPredicate predicate, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Scan limit must be positive, was " + limit);
+		}
+		scans.increment();
+		CatalogVersion catalog = productRepository.getCatalog();
+		if (catalog.size() == 0) {
+			return Collections.emptyList();
+		}
+		List<Product> matches = pool.invoke(new Segment(catalog, predicate, limit, new AtomicInteger(), 0, catalog.size()));
+		return matches.size() > limit ? new ArrayList<Product>(matches.subList(0, limit)) : matches;
+	}
+
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+		metrics.put("parallelism", pool.getParallelism());
+		metrics.put("segmentSize", segmentSize);
+		metrics.put("scans", scans.sum());
+		metrics.put("segmentsScanned", segmentsScanned.sum());
+		metrics.put("segmentsSkipped", segmentsSkipped.sum());
+		metrics.put("activeThreads", pool.getActiveThreadCount());
+		metrics.put("steals", pool.getStealCount());
+		return metrics;
+	}
+
+	private static List<Product> concat(List<Product> first, List<Product> second) {
+		if (second.isEmpty()) {
+			return first;
+		}
+		if (first.isEmpty()) {
+			return second;
+		}
+		List<Product> both = new ArrayList<Product>(first.size() + second.size());
+		both.addAll(first);
+		both.addAll(second);
+		return both;
+	}
+
+	/**
+	 * Splits on segment boundaries until one segment is left. A segment
+	 * counts its matches locally and publishes them once it is done, so
+	 * segments only touch the shared count at their start and end.
+	 */
+	private class Segment extends RecursiveTask<List<Product>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CatalogVersion catalog;
+		private final ProductPredicate predicate;
+		private final int limit;
+		private final AtomicInteger found;
+		private final int from;
+		private final int to;
+
+		Segment(CatalogVersion catalog, ProductPredicate predicate, int limit, AtomicInteger found, int from, int to) {
+			this.catalog = catalog;
+			this.predicate = predicate;
+			this.limit = limit;
+			this.found = found;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<Product> compute() {
+			int segments = (to - from + segmentSize - 1) / segmentSize;
+			if (segments > 1) {
+				int middle = from + segments / 2 * segmentSize;
+				Segment right = new Segment(catalog, predicate, limit, found, middle, to);
+				right.fork();
+				List<Product> left = new Segment(catalog, predicate, limit, found, from, middle).compute();
+				return concat(left, right.join());
+			}
+			int wanted = limit - found.get();
+			if (wanted <= 0) {
+				segmentsSkipped.increment();
+				return Collections.emptyList();
+			}
+			segmentsScanned.increment();
+			List<Product> matches = Collections.emptyList();
+			for (int i = from; i < to && matches.size() < wanted; i++) {
+				Product product = catalog.get(i);
+				if (predicate.matches(product)) {
+					if (matches.isEmpty()) {
+						matches = new ArrayList<Product>();
+					}
+					matches.add(product);
+				}
+			}
+			if (limit != NO_LIMIT && !matches.isEmpty()) {
+				found.addAndGet(matches.size());
+			}
+			return matches;
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package com.packt.webstore.scan;
+
+import com.packt.webstore.domain.Product;
+
+/**
+ * A condition a scan checks against every product. Implementations are
+ * called from several threads at once and must not keep state.
+ */
+public interface ProductPredicate {
+
+	boolean matches(Product product);
+}
@@ -0,0 +1,188 @@
+package com.packt.webstore.scan;
+
+import java.util.List;
+
+import com.packt.webstore.domain.AttributeDictionary;
+import com.packt.webstore.domain.Product;
+
+/**
+ * The conditions ad-hoc catalog queries are built from. Each one resolves
+ * what it can up front, such as a category name to its dictionary id, so
+ * the per product check stays cheap.
+ */
+public final class ProductPredicates {
+
+	private static final ProductPredicate ALL = new ProductPredicate() {
+		@Override
+		public boolean matches(Product product) {
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "all";
+		}
+	};
+
+	private ProductPredicates() {
+	}
+
+	public static ProductPredicate all() {
+		return ALL;
+	}
+
+	/**
+	 * Case insensitive, without lower casing every description scanned; the
+	 * full comparison only runs where the first character matches.
+	 */
+	public static ProductPredicate descriptionContains(final String text) {
+		if (text == null || text.isEmpty()) {
+			throw new IllegalArgumentException("Search text is required");
+		}
+		final char lower = Character.toLowerCase(text.charAt(0));
+		final char upper = Character.toUpperCase(text.charAt(0));
+		return new ProductPredicate() {
+			@Override
+			public boolean matches(Product product) {
+				String description = product.getDescription();
+				if (description == null) {
+					return false;
+				}
+				for (int i = 0, last = description.length() - text.length(); i <= last; i++) {
+					char c = description.charAt(i);
+					if ((c == lower || c == upper) && description.regionMatches(true, i, text, 0, text.length())) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public String toString() {
+				return "description contains " + text;
+			}
+		};
+	}
+
+	public static ProductPredicate stockBelow(final long units) {
+		return new ProductPredicate() {
+			@Override
+			public boolean matches(Product product) {
+				return product.getUnitsInStock() < units;
+			}
+
+			@Override
+			public String toString() {
+				return "stock < " + units;
+			}
+		};
+	}
+
+	public static ProductPredicate discontinued(final boolean discontinued) {
+		return new ProductPredicate() {
+			@Override
+			public boolean matches(Product product) {
+				return product.isDiscontinued() == discontinued;
+			}
+
+			@Override
+			public String toString() {
+				return "discontinued = " + discontinued;
+			}
+		};
+	}
+
+	/**
+	 * A category no product has ever used matches nothing.
+	 */
+	public static ProductPredicate category(final String category) {
+		final int categoryId = AttributeDictionary.CATEGORIES.idOf(category);
+		return new ProductPredicate() {
+			@Override
+			public boolean matches(Product product) {
+				return categoryId != AttributeDictionary.UNKNOWN && product.getCategoryId() == categoryId;
+			}
+
+			@Override
+			public String toString() {
+				return "category = " + category;
+			}
+		};
+	}
+
+	/**
+	 * Conditions are checked in the order given, so the cheapest should
+	 * come first.
+	 */
+	public static ProductPredicate and(ProductPredicate... predicates) {
+		final ProductPredicate[] all = predicates.clone();
+		if (all.length == 1) {
+			return all[0];
+		}
+		return new ProductPredicate() {
+			@Override
+			public boolean matches(Product product) {
+				for (ProductPredicate predicate : all) {
+					if (!predicate.matches(product)) {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			@Override
+			public String toString() {
+				return join(all, " and ");
+			}
+		};
+	}
+
+	public static ProductPredicate and(List<ProductPredicate> predicates) {
+		return predicates.isEmpty() ? ALL : and(predicates.toArray(new ProductPredicate[predicates.size()]));
+	}
+
+	public static ProductPredicate or(ProductPredicate... predicates) {
+		final ProductPredicate[] any = predicates.clone();
+		return new ProductPredicate() {
+			@Override
+			public boolean matches(Product product) {
+				for (ProductPredicate predicate : any) {
+					if (predicate.matches(product)) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public String toString() {
+				return join(any, " or ");
+			}
+		};
+	}
+
+	public static ProductPredicate not(final ProductPredicate predicate) {
+		return new ProductPredicate() {
+			@Override
+			public boolean matches(Product product) {
+				return !predicate.matches(product);
+			}
+
+			@Override
+			public String toString() {
+				return "not (" + predicate + ")";
+			}
+		};
+	}
+
+	private static String join(ProductPredicate[] predicates, String separator) {
+		StringBuilder joined = new StringBuilder();
+		for (ProductPredicate predicate : predicates) {
+			if (joined.length() > 0) {
+				joined.append(separator);
+			}
+			joined.append('(').append(predicate).append(')');
+		}
+		return joined.toString();
+	}
+}
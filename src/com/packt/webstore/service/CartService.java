@@ -1,10 +1,13 @@
 package com.packt.webstore.service;
 
 import com.packt.webstore.domain.Cart;
+import com.packt.webstore.domain.Product;
 
 public interface CartService {
 	Cart create(Cart cart);
 	Cart read(String cartId);
 	void update(String cartId, Cart cart);
 	void delete(String cartId);
+	void addItem(String cartId, Cart cart, Product product);
+	int productChanged(Product product);
 }
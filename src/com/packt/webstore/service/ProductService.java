@@ -1,16 +1,23 @@
 package com.packt.webstore.service;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.ProductQuery;
 
 public interface ProductService {
 	List<Product> getAllProducts();
 	List<Product> getProductsByCategory(String category);
+	boolean isKnownCategory(String category);
 	Set<Product> getProductsByfilter(Map<String, List<String>> filterParams);
+	List<Product> getProducts(ProductQuery query);
 	Product getProductById(String productId);
 	void addProduct(Product product);
+	int updatePrice(String productId, BigDecimal unitPrice);
+	int discontinue(String productId);
+	long getCatalogVersion();
 	public String getFileExtension(String fileName);
 }
@@ -0,0 +1,13 @@
+package com.packt.webstore.service;
+
+import com.packt.webstore.domain.PromoRedemption;
+
+public interface PromoCodeService {
+	int UNLIMITED = 0;
+
+	int addCampaign(String name, long validFrom, long validUntil);
+	boolean addCode(String code, int campaignId, int maxRedemptions);
+	PromoRedemption redeem(String code);
+	int getRedemptions(String code);
+	int size();
+}
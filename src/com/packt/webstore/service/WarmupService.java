@@ -0,0 +1,8 @@
+package com.packt.webstore.service;
+
+import java.util.Map;
+
+public interface WarmupService {
+	boolean isReady();
+	Map<String, Object> getStatus();
+}
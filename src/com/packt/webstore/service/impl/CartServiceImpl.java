@@ -1,22 +1,82 @@
 package com.packt.webstore.service.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.packt.webstore.analytics.CoPurchaseRecommender;
 import com.packt.webstore.domain.Cart;
-import com.packt.webstore.domain.repository.CartRepository;
+import com.packt.webstore.domain.CartItem;
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.repository.impl.ShardedCartRepositoryImpl;
+import com.packt.webstore.jfr.CartMutationEvent;
+import com.packt.webstore.push.PushHub;
 import com.packt.webstore.service.CartService;
 
 @Service
 public class CartServiceImpl implements CartService{
 
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Autowired
+	@Qualifier("ShardedCart")
+	private ShardedCartRepositoryImpl cartRepository;
+
+	@Autowired
+	private PushHub pushHub;
+
 	@Autowired
-	private CartRepository cartRepository;
+	private CoPurchaseRecommender coPurchaseRecommender;
+
+	@Value("#{systemProperties['webstore.cart.repriceThreads'] ?: 4}")
+	private int repriceThreads;
+
+	@Value("#{systemProperties['webstore.cart.repriceBatchSize'] ?: 200}")
+	private int repriceBatchSize;
+
+	private ExecutorService repricer;
+
+	@PostConstruct
+	public void start() {
+		final AtomicInteger threads = new AtomicInteger();
+		repricer = Executors.newFixedThreadPool(repriceThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "cart-repricer-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@PreDestroy
+	public void stop() {
+		repricer.shutdownNow();
+	}
 	
 	@Override
 	public Cart create(Cart cart) {
-
-		return cartRepository.create(cart);
+		CartMutationEvent event = new CartMutationEvent();
+		event.begin();
+		Cart created = cartRepository.create(cart);
+		pushHub.cartChanged(created.getCartId(), created);
+		commit(event, "create", created);
+		return created;
 	}
 
 	@Override
@@ -27,16 +87,106 @@ public class CartServiceImpl implements CartService{
 
 	@Override
 	public void update(String cartId, Cart cart) {
-		
+		CartMutationEvent event = new CartMutationEvent();
+		event.begin();
 		cartRepository.update(cartId, cart);
-		
+		pushHub.cartChanged(cartId, cart);
+		commit(event, "update", cart);
 	}
 
 	@Override
 	public void delete(String cartId) {
-		
+		CartMutationEvent event = new CartMutationEvent();
+		event.begin();
 		cartRepository.delete(cartId);
-		
+		pushHub.cartDeleted(cartId);
+		if (event.shouldCommit()) {
+			event.operation = "delete";
+			event.cartId = cartId;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Adds one unit of the product and saves the cart. A product new to the
+	 * cart counts as bought together with everything already in it.
+	 * Discontinued products are refused.
+	 */
+	@Override
+	public void addItem(String cartId, Cart cart, Product product) {
+		if (product.isDiscontinued()) {
+			throw new IllegalArgumentException("Product " + product.getProductId() + " has been discontinued");
+		}
+		List<String> others = new ArrayList<String>(cart.getCartItems().keySet());
+		boolean added = !others.contains(product.getProductId());
+		cart.addCartItem(new CartItem(product));
+		update(cartId, cart);
+		if (added) {
+			coPurchaseRecommender.productAdded(product.getProductId(), others);
+		}
+	}
+
+	/**
+	 * Only the carts this node holds that the cart ring lists for the
+	 * product are read; they are repriced in batches on the repricer threads,
+	 * saved and pushed to their subscribers. Every node calls this as it
+	 * applies the change to its catalog, so each reprices its own carts.
+	 * Returns how many carts were changed here.
+	 */
+	@Override
+	public int productChanged(final Product product) {
+		List<String> cartIds = cartRepository.localCartsWith(product.getProductId());
+		if (cartIds.size() <= repriceBatchSize) {
+			return reprice(cartIds, product);
+		}
+		List<Callable<Integer>> batches = new ArrayList<Callable<Integer>>();
+		for (int from = 0; from < cartIds.size(); from += repriceBatchSize) {
+			final List<String> batch = cartIds.subList(from, Math.min(from + repriceBatchSize, cartIds.size()));
+			batches.add(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return reprice(batch, product);
+				}
+			});
+		}
+		int repriced = 0;
+		try {
+			for (Future<Integer> result : repricer.invokeAll(batches)) {
+				repriced += result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while repricing carts for " + product.getProductId(), e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not reprice carts for " + product.getProductId(), e.getCause());
+		}
+		logger.info("Repriced " + repriced + " of " + cartIds.size() + " carts holding " + product.getProductId());
+		return repriced;
+	}
+
+	private int reprice(List<String> cartIds, Product product) {
+		int repriced = 0;
+		for (String cartId : cartIds) {
+			Cart cart = cartRepository.read(cartId);
+			if (cart != null && cart.replaceProduct(product)) {
+				try {
+					update(cartId, cart);
+					repriced++;
+				} catch (IllegalArgumentException e) {
+					// deleted meanwhile
+				}
+			}
+		}
+		return repriced;
+	}
+
+	private static void commit(CartMutationEvent event, String operation, Cart cart) {
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.cartId = cart.getCartId();
+			event.lineItems = cart.getCartItems() == null ? 0 : cart.getCartItems().size();
+			event.commit();
+		}
 	}
 
 }
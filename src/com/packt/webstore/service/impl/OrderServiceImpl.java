@@ -6,6 +6,8 @@ import org.springframework.stereotype.Service;
 
 import com.packt.webstore.domain.Product;
 import com.packt.webstore.domain.repository.ProductRepository;
+import com.packt.webstore.event.OrderEventPipeline;
+import com.packt.webstore.jfr.OrderCommitEvent;
 import com.packt.webstore.service.OrderService;
 
 @Service
@@ -14,13 +16,36 @@ public class OrderServiceImpl implements OrderService{
 	@Autowired
 	@Qualifier("OutMemory")
 	private ProductRepository productRepository;
+	
+	@Autowired
+	private OrderEventPipeline orderEventPipeline;
 
 	public void processOrder(String productId, long quantity) {
+		if(quantity <= 0){
+			throw new IllegalArgumentException("Order quantity must be positive, was "+ quantity);
+		}
+		OrderCommitEvent event = new OrderCommitEvent();
+		event.begin();
 		Product productById = productRepository.getProductById(productId);
 
-		if(productById.getUnitsInStock() < quantity){
-			throw new IllegalArgumentException("Out of stock. Available units in stock is "+ productById.getUnitsInStock());
+		long unitsInStock;
+		try{
+			unitsInStock = productRepository.decreaseStock(productId, quantity);
+		} catch(IllegalArgumentException e){
+			commit(event, productId, quantity, productById.getUnitsInStock(), false);
+			throw e;
+		}
+		orderEventPipeline.publish(productId, quantity, productById.getUnitPrice(), unitsInStock);
+		commit(event, productId, quantity, unitsInStock, true);
+	}
+
+	private static void commit(OrderCommitEvent event, String productId, long quantity, long unitsInStock, boolean accepted) {
+		if (event.shouldCommit()) {
+			event.productId = productId;
+			event.quantity = quantity;
+			event.unitsInStock = unitsInStock;
+			event.accepted = accepted;
+			event.commit();
 		}
-		productById.setUnitsInStock(productById.getUnitsInStock()-quantity);
 	}
 }
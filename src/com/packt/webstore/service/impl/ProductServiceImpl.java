@@ -1,5 +1,6 @@
 package com.packt.webstore.service.impl;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -8,8 +9,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import com.packt.webstore.domain.AttributeDictionary;
 import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.ProductQuery;
 import com.packt.webstore.domain.repository.ProductRepository;
+import com.packt.webstore.jfr.FilterEvaluationEvent;
+import com.packt.webstore.jfr.ProductLookupEvent;
+import com.packt.webstore.service.CartService;
 import com.packt.webstore.service.ProductService;
 
 @Service
@@ -18,6 +24,9 @@ public class ProductServiceImpl implements ProductService{
 	@Autowired
 	@Qualifier("OutMemory")
 	private ProductRepository productRepository;
+
+	@Autowired
+	private CartService cartService;
 	
 	@Override
 	public List<Product> getAllProducts() {
@@ -26,19 +35,71 @@ public class ProductServiceImpl implements ProductService{
 
 	@Override
 	public List<Product> getProductsByCategory(String category) {
-		
-		return productRepository.getProductsByCategory(category);
+		FilterEvaluationEvent event = new FilterEvaluationEvent();
+		event.begin();
+		List<Product> products = productRepository.getProductsByCategory(category);
+		if (event.shouldCommit()) {
+			event.operation = "category";
+			event.criteria = category;
+			event.resultSize = products.size();
+			event.commit();
+		}
+		return products;
+	}
+
+	/**
+	 * Categories are interned as products are created, so a category no
+	 * product has ever used is rejected without scanning the catalog.
+	 */
+	@Override
+	public boolean isKnownCategory(String category) {
+		return AttributeDictionary.CATEGORIES.contains(category);
 	}
 
 	@Override
 	public Set<Product> getProductsByfilter(
 			Map<String, List<String>> filterParams) {
-		return productRepository.getProductsByFiler(filterParams);
+		FilterEvaluationEvent event = new FilterEvaluationEvent();
+		event.begin();
+		Set<Product> products = productRepository.getProductsByFiler(filterParams);
+		if (event.shouldCommit()) {
+			event.operation = "filter";
+			event.criteria = filterParams.toString();
+			event.resultSize = products.size();
+			event.commit();
+		}
+		return products;
+	}
+
+	@Override
+	public List<Product> getProducts(ProductQuery query) {
+		FilterEvaluationEvent event = new FilterEvaluationEvent();
+		event.begin();
+		List<Product> products = productRepository.getProducts(query);
+		if (event.shouldCommit()) {
+			event.operation = "query";
+			event.criteria = query.toString();
+			event.resultSize = products.size();
+			event.commit();
+		}
+		return products;
 	}
 
 	@Override
 	public Product getProductById(String productId) {
-		return productRepository.getProductById(productId);
+		ProductLookupEvent event = new ProductLookupEvent();
+		event.begin();
+		Product product = null;
+		try {
+			product = productRepository.getProductById(productId);
+			return product;
+		} finally {
+			if (event.shouldCommit()) {
+				event.productId = productId;
+				event.found = product != null;
+				event.commit();
+			}
+		}
 	}
 
 	@Override
@@ -46,6 +107,37 @@ public class ProductServiceImpl implements ProductService{
 		productRepository.addProduct(product);
 		
 	}
+
+	/**
+	 * Carts this node holds are repriced before this returns, and the
+	 * number of them changed is returned; followers reprice theirs as they
+	 * replicate the change.
+	 */
+	@Override
+	public int updatePrice(String productId, BigDecimal unitPrice) {
+		if (unitPrice == null || unitPrice.signum() < 0) {
+			throw new IllegalArgumentException("Unit price must not be negative, was " + unitPrice);
+		}
+		return cartService.productChanged(productRepository.updatePrice(productId, unitPrice));
+	}
+
+	/**
+	 * The product stays in the catalog but is taken out of every cart, on
+	 * followers once they replicate the change.
+	 */
+	@Override
+	public int discontinue(String productId) {
+		return cartService.productChanged(productRepository.discontinue(productId));
+	}
+
+	/**
+	 * Changes whenever a product is added or its stock or price changes; anything
+	 * derived from the catalog stays valid while it does not.
+	 */
+	@Override
+	public long getCatalogVersion() {
+		return productRepository.getCatalogVersion();
+	}
 	
 	public String getFileExtension(String fileName){
 		
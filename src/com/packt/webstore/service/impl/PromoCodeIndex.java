@@ -0,0 +1,176 @@
+package com.packt.webstore.service.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Open addressing table of promo codes keyed by a 64 bit hash of the case
+ * folded code, with one redemption counter per slot. A code costs about 20
+ * bytes instead of a String plus a map entry, so millions of codes fit in
+ * a few hundred megabytes. Two distinct codes sharing a 64 bit hash is
+ * accepted as negligibly unlikely.
+ */
+class PromoCodeIndex {
+
+	static final int NOT_FOUND = -1;
+
+	private static final long EMPTY = 0L;
+	private static final int MOVED = -1;
+	private static final double MAX_LOAD = 0.75;
+
+	private volatile Table table;
+	private int size;
+
+	PromoCodeIndex(int expectedCodes) {
+		table = new Table(capacityFor(expectedCodes));
+	}
+
+	synchronized boolean put(String code, int campaignId, int maxRedemptions) {
+		if (size + 1 > table.capacity() * MAX_LOAD) {
+			resize();
+		}
+		if (!table.insert(hash(code), campaignId, maxRedemptions, 0)) {
+			return false;
+		}
+		size++;
+		return true;
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	int campaignOf(String code) {
+		Table t = table;
+		int slot = t.find(hash(code));
+		return slot < 0 ? NOT_FOUND : t.campaigns[slot];
+	}
+
+	int redemptions(String code) {
+		while (true) {
+			Table t = table;
+			int slot = t.find(hash(code));
+			if (slot < 0) {
+				return NOT_FOUND;
+			}
+			int used = t.counts.get(slot);
+			if (used != MOVED) {
+				return used;
+			}
+		}
+	}
+
+	/**
+	 * Takes one redemption of the code, returning false when its limit is
+	 * used up. The slot counter is claimed with a CAS, so concurrent
+	 * redemptions of different codes never contend.
+	 */
+	boolean tryRedeem(String code) {
+		long key = hash(code);
+		while (true) {
+			Table t = table;
+			int slot = t.find(key);
+			if (slot < 0) {
+				return false;
+			}
+			int limit = t.limits[slot];
+			while (true) {
+				int used = t.counts.get(slot);
+				if (used == MOVED) {
+					break;
+				}
+				if (limit != 0 && used >= limit) {
+					return false;
+				}
+				if (used == Integer.MAX_VALUE || t.counts.compareAndSet(slot, used, used + 1)) {
+					return true;
+				}
+			}
+		}
+	}
+
+	private void resize() {
+		Table old = table;
+		Table bigger = new Table(old.capacity() * 2);
+		for (int i = 0; i < old.capacity(); i++) {
+			long key = old.keys.get(i);
+			if (key != EMPTY) {
+				int used = old.counts.getAndSet(i, MOVED);
+				bigger.insert(key, old.campaigns[i], old.limits[i], used);
+			}
+		}
+		table = bigger;
+	}
+
+	private static int capacityFor(int expectedCodes) {
+		int capacity = 16;
+		while (capacity * MAX_LOAD < expectedCodes) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	static long hash(String code) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < code.length(); i++) {
+			h ^= Character.toUpperCase(code.charAt(i));
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return h == EMPTY ? 1 : h;
+	}
+
+	private static class Table {
+		final AtomicLongArray keys;
+		final int[] campaigns;
+		final int[] limits;
+		final AtomicIntegerArray counts;
+		final int mask;
+
+		Table(int capacity) {
+			keys = new AtomicLongArray(capacity);
+			campaigns = new int[capacity];
+			limits = new int[capacity];
+			counts = new AtomicIntegerArray(capacity);
+			mask = capacity - 1;
+		}
+
+		int capacity() {
+			return mask + 1;
+		}
+
+		int find(long key) {
+			int slot = (int) key & mask;
+			while (true) {
+				long current = keys.get(slot);
+				if (current == key) {
+					return slot;
+				}
+				if (current == EMPTY) {
+					return NOT_FOUND;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		boolean insert(long key, int campaignId, int limit, int used) {
+			int slot = (int) key & mask;
+			while (true) {
+				long current = keys.get(slot);
+				if (current == key) {
+					return false;
+				}
+				if (current == EMPTY) {
+					campaigns[slot] = campaignId;
+					limits[slot] = limit;
+					counts.set(slot, used);
+					keys.set(slot, key);
+					return true;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+	}
+}
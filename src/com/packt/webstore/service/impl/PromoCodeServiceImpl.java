@@ -0,0 +1,128 @@
+package com.packt.webstore.service.impl;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.packt.webstore.domain.PromoCampaign;
+import com.packt.webstore.domain.PromoRedemption;
+import com.packt.webstore.service.PromoCodeService;
+
+@Service
+public class PromoCodeServiceImpl implements PromoCodeService {
+
+	private static final int DEFAULT_EXPECTED_CODES = 1024;
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Value("#{systemProperties['webstore.promo.codesFile'] ?: ''}")
+	private String codesFile = "";
+
+	@Value("#{systemProperties['webstore.promo.expectedCodes'] ?: " + DEFAULT_EXPECTED_CODES + "}")
+	private int expectedCodes = DEFAULT_EXPECTED_CODES;
+
+	private PromoCodeIndex index;
+	private volatile PromoCampaign[] campaigns = new PromoCampaign[0];
+	private final Map<String, Integer> campaignIds = new HashMap<String, Integer>();
+
+	@PostConstruct
+	public void init() throws IOException {
+		index = new PromoCodeIndex(expectedCodes);
+		addCampaign("default", Long.MIN_VALUE, Long.MAX_VALUE);
+		if (!codesFile.isEmpty()) {
+			loadCodes(codesFile);
+		}
+	}
+
+	@Override
+	public synchronized int addCampaign(String name, long validFrom, long validUntil) {
+		Integer existing = campaignIds.get(name);
+		if (existing != null) {
+			return existing;
+		}
+		PromoCampaign[] grown = Arrays.copyOf(campaigns, campaigns.length + 1);
+		grown[campaigns.length] = new PromoCampaign(name, validFrom, validUntil);
+		campaigns = grown;
+		campaignIds.put(name, campaigns.length - 1);
+		return campaigns.length - 1;
+	}
+
+	@Override
+	public boolean addCode(String code, int campaignId, int maxRedemptions) {
+		if (campaignId < 0 || campaignId >= campaigns.length) {
+			throw new IllegalArgumentException("No promo campaign with id " + campaignId);
+		}
+		if (maxRedemptions < 0) {
+			throw new IllegalArgumentException("Redemption limit can not be negative for promo code " + code);
+		}
+		return index.put(code, campaignId, maxRedemptions);
+	}
+
+	@Override
+	public PromoRedemption redeem(String code) {
+		if (code == null || code.isEmpty()) {
+			return PromoRedemption.UNKNOWN;
+		}
+		int campaignId = index.campaignOf(code);
+		if (campaignId == PromoCodeIndex.NOT_FOUND) {
+			return PromoRedemption.UNKNOWN;
+		}
+		PromoRedemption window = campaigns[campaignId].checkWindow(System.currentTimeMillis());
+		if (window != PromoRedemption.REDEEMED) {
+			return window;
+		}
+		return index.tryRedeem(code) ? PromoRedemption.REDEEMED : PromoRedemption.EXHAUSTED;
+	}
+
+	@Override
+	public int getRedemptions(String code) {
+		return index.redemptions(code);
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * Loads lines of {@code code,campaign,maxRedemptions[,validFrom,validUntil]}
+	 * where the window is given in epoch millis by the first line of each
+	 * campaign and a limit of 0 means unlimited.
+	 */
+	private void loadCodes(String fileName) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), StandardCharsets.UTF_8));
+		int loaded = 0;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split(",");
+				if (fields.length != 3 && fields.length != 5) {
+					throw new IllegalArgumentException("Malformed promo code line: " + line);
+				}
+				long validFrom = fields.length == 5 ? Long.parseLong(fields[3].trim()) : Long.MIN_VALUE;
+				long validUntil = fields.length == 5 ? Long.parseLong(fields[4].trim()) : Long.MAX_VALUE;
+				int campaignId = addCampaign(fields[1].trim(), validFrom, validUntil);
+				if (addCode(fields[0].trim(), campaignId, Integer.parseInt(fields[2].trim()))) {
+					loaded++;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		logger.info("Loaded " + loaded + " promo codes from " + fileName);
+	}
+}
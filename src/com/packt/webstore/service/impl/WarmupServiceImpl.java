@@ -0,0 +1,252 @@
+package com.packt.webstore.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.packt.webstore.domain.Cart;
+import com.packt.webstore.domain.CartItem;
+import com.packt.webstore.domain.CompactCart;
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.service.ProductService;
+import com.packt.webstore.service.WarmupService;
+
+/**
+ * Warms the node up once the web context is refreshed. Indexes and
+ * serializers are primed in place, then a synthetic request mix is replayed
+ * over loopback through the whole stack (filters, handlers, JSP compilation,
+ * JSON and XML views) until round latency stops improving. Only then does
+ * the node report itself ready.
+ */
+@Service
+public class WarmupServiceImpl implements WarmupService, ApplicationListener<ContextRefreshedEvent> {
+
+	private static final int MAX_PRODUCT_PAGES = 20;
+	private static final double STABLE_TOLERANCE = 0.10;
+	private static final int STABLE_ROUNDS = 3;
+	private static final long CONNECT_RETRY_MILLIS = 500;
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Value("#{systemProperties['webstore.warmup.enabled'] ?: 'true'}")
+	private boolean enabled;
+
+	@Value("#{systemProperties['webstore.warmup.baseUrl'] ?: 'http://localhost:8080/Spring01'}")
+	private String baseUrl;
+
+	@Value("#{systemProperties['webstore.warmup.maxRounds'] ?: 50}")
+	private int maxRounds;
+
+	@Value("#{systemProperties['webstore.warmup.timeoutMillis'] ?: 120000}")
+	private long timeoutMillis;
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ApplicationContext applicationContext;
+
+	private volatile boolean ready;
+	private volatile boolean started;
+	private volatile int rounds;
+	private volatile long lastRoundMillis;
+	private volatile String state = "starting";
+
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		if (event.getApplicationContext() != applicationContext || started) {
+			return;
+		}
+		started = true;
+		if (!enabled) {
+			markReady("disabled");
+			return;
+		}
+		primeInProcess();
+		Thread warmup = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				replayRequests();
+			}
+		}, "webstore-warmup");
+		warmup.setDaemon(true);
+		warmup.start();
+	}
+
+	@Override
+	public boolean isReady() {
+		return ready;
+	}
+
+	@Override
+	public Map<String, Object> getStatus() {
+		Map<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("ready", ready);
+		status.put("state", state);
+		status.put("rounds", rounds);
+		status.put("lastRoundMillis", lastRoundMillis);
+		return status;
+	}
+
+	private void primeInProcess() {
+		state = "priming";
+		List<Product> products = productService.getAllProducts();
+		for (Product product : products) {
+			productService.getProductById(product.getProductId());
+			productService.getProductsByCategory(product.getCategory());
+		}
+		try {
+			ObjectMapper mapper = new ObjectMapper();
+			Cart cart = new Cart("warmup");
+			if (!products.isEmpty()) {
+				cart.addCartItem(new CartItem(products.get(0)));
+			}
+			mapper.writeValueAsBytes(products);
+			mapper.writeValueAsBytes(cart);
+			mapper.writeValueAsBytes(new CompactCart(cart));
+		} catch (IOException e) {
+			logger.warn("Serializer warm-up failed", e);
+		}
+		// view resolvers, views and marshallers are singletons; resolving them
+		// here creates them before the first request does
+		applicationContext.getBeansOfType(ViewResolver.class);
+		applicationContext.getBeansOfType(View.class);
+	}
+
+	private void replayRequests() {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		try {
+			List<Request> mix = requestMix();
+			waitForConnector(deadline);
+			state = "replaying";
+			String cookie = null;
+			List<Long> roundTimes = new ArrayList<Long>();
+			while (rounds < maxRounds && System.currentTimeMillis() < deadline) {
+				long start = System.nanoTime();
+				for (Request request : mix) {
+					cookie = request.send(baseUrl, cookie);
+				}
+				lastRoundMillis = (System.nanoTime() - start) / 1000000;
+				roundTimes.add(System.nanoTime() - start);
+				rounds++;
+				if (isStable(roundTimes)) {
+					markReady("warm");
+					return;
+				}
+			}
+			markReady("warm-up limit reached");
+		} catch (Exception e) {
+			logger.warn("Warm-up replay against " + baseUrl + " failed, marking ready anyway", e);
+			markReady("warm-up failed");
+		}
+	}
+
+	private List<Request> requestMix() throws IOException {
+		List<Request> mix = new ArrayList<Request>();
+		mix.add(new Request("/products", "text/html"));
+		mix.add(new Request("/products", "application/json"));
+		mix.add(new Request("/products", "application/xml"));
+		List<Product> products = productService.getAllProducts();
+		for (int i = 0; i < products.size() && i < MAX_PRODUCT_PAGES; i++) {
+			Product product = products.get(i);
+			mix.add(new Request("/products/product?id=" + encode(product.getProductId()), "text/html"));
+			mix.add(new Request("/products/" + encode(product.getCategory()), "text/html"));
+			mix.add(new Request("/products/filter/ByCriteria;brand=" + encode(product.getManufacturer())
+					+ ";category=" + encode(product.getCategory()), "text/html"));
+		}
+		return mix;
+	}
+
+	private static String encode(String value) throws IOException {
+		return URLEncoder.encode(String.valueOf(value), "UTF-8").replace("+", "%20");
+	}
+
+	private void waitForConnector(long deadline) throws Exception {
+		while (true) {
+			try {
+				new Request("/products", "text/html").send(baseUrl, null);
+				return;
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw e;
+				}
+				Thread.sleep(CONNECT_RETRY_MILLIS);
+			}
+		}
+	}
+
+	private boolean isStable(List<Long> roundTimes) {
+		int n = roundTimes.size();
+		if (n <= STABLE_ROUNDS) {
+			return false;
+		}
+		for (int i = n - STABLE_ROUNDS; i < n; i++) {
+			double previous = roundTimes.get(i - 1);
+			if (Math.abs(roundTimes.get(i) - previous) > previous * STABLE_TOLERANCE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void markReady(String reason) {
+		state = reason;
+		ready = true;
+		logger.info("Node is ready (" + reason + ") after " + rounds + " warm-up rounds");
+	}
+
+	private static class Request {
+		private final String path;
+		private final String accept;
+
+		Request(String path, String accept) {
+			this.path = path;
+			this.accept = accept;
+		}
+
+		String send(String baseUrl, String cookie) throws IOException {
+			HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+			connection.setInstanceFollowRedirects(false);
+			connection.setRequestProperty("Accept", accept);
+			if (cookie != null) {
+				connection.setRequestProperty("Cookie", cookie);
+			}
+			try {
+				connection.getResponseCode();
+				InputStream in = connection.getErrorStream() != null ? connection.getErrorStream() : connection.getInputStream();
+				if (in != null) {
+					byte[] buffer = new byte[8192];
+					while (in.read(buffer) != -1) {
+						// drain the body so the response is fully rendered
+					}
+					in.close();
+				}
+				String setCookie = connection.getHeaderField("Set-Cookie");
+				if (setCookie == null) {
+					return cookie;
+				}
+				int end = setCookie.indexOf(';');
+				return end < 0 ? setCookie : setCookie.substring(0, end);
+			} finally {
+				connection.disconnect();
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.packt.webstore.tracing;
+
+/**
+ * Spans of the trace running on one thread. The arrays are allocated once
+ * per thread and reused by every sampled request on it; a request that
+ * opens more spans than fit keeps its outer spans and counts the rest as
+ * dropped.
+ */
+class SpanBuffer {
+
+	static final int NO_SPAN = -1;
+
+	final String[] names;
+	final long[] starts;
+	final long[] ends;
+	final int[] parents;
+	int size;
+	int dropped;
+	long traceId;
+	long parentSpanId;
+	long spanSeed;
+	long startMicros;
+	long startNanos;
+	private int current = NO_SPAN;
+	private boolean active;
+
+	SpanBuffer(int capacity) {
+		names = new String[capacity];
+		starts = new long[capacity];
+		ends = new long[capacity];
+		parents = new int[capacity];
+	}
+
+	void begin(long traceId, long parentSpanId, long spanSeed) {
+		this.traceId = traceId;
+		this.parentSpanId = parentSpanId;
+		this.spanSeed = spanSeed;
+		this.startMicros = System.currentTimeMillis() * 1000;
+		this.startNanos = System.nanoTime();
+		this.size = 0;
+		this.dropped = 0;
+		this.current = NO_SPAN;
+		this.active = true;
+	}
+
+	boolean isActive() {
+		return active;
+	}
+
+	int open(String name) {
+		if (size == names.length) {
+			dropped++;
+			return NO_SPAN;
+		}
+		int span = size++;
+		names[span] = name;
+		starts[span] = System.nanoTime();
+		ends[span] = 0;
+		parents[span] = current;
+		current = span;
+		return span;
+	}
+
+	void close(int span) {
+		if (span == NO_SPAN) {
+			return;
+		}
+		ends[span] = System.nanoTime();
+		current = parents[span];
+	}
+
+	void end() {
+		active = false;
+		for (int span = 0; span < size; span++) {
+			names[span] = null;
+		}
+	}
+
+	long epochMicros(long nanos) {
+		return startMicros + (nanos - startNanos) / 1000;
+	}
+}
@@ -0,0 +1,67 @@
+package com.packt.webstore.tracing;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One span in the Zipkin v2 JSON format; ids are lower-case hex and times
+ * are epoch microseconds.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TraceSpan {
+
+	private static final Map<String, String> LOCAL_ENDPOINT = Collections.singletonMap("serviceName", "webstore");
+
+	private final String traceId;
+	private final String id;
+	private final String parentId;
+	private final String name;
+	private final long timestamp;
+	private final long duration;
+	private final Map<String, String> tags;
+
+	public TraceSpan(String traceId, String id, String parentId, String name, long timestamp, long duration,
+			Map<String, String> tags) {
+		this.traceId = traceId;
+		this.id = id;
+		this.parentId = parentId;
+		this.name = name;
+		this.timestamp = timestamp;
+		this.duration = duration;
+		this.tags = tags;
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getParentId() {
+		return parentId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public long getDuration() {
+		return duration;
+	}
+
+	public Map<String, String> getLocalEndpoint() {
+		return LOCAL_ENDPOINT;
+	}
+
+	public Map<String, String> getTags() {
+		return tags;
+	}
+}
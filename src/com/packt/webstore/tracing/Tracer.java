@@ -0,0 +1,268 @@
+package com.packt.webstore.tracing;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * In-process tracing of sampled requests. The sampling decision is taken
+ * once when a request starts; only then do service and repository calls on
+ * that thread record spans, into a buffer the thread allocated once and
+ * reuses. With a sample rate of 0 nothing is proxied at all. Finished
+ * traces are kept in memory and, when an export file is configured,
+ * appended to it as one Zipkin v2 JSON array per line.
+ */
+@Component
+public class Tracer {
+
+	private static final int EXPORT_QUEUE_SIZE = 1024;
+
+	private final Logger logger = Logger.getLogger(this.getClass());
+
+	@Value("#{systemProperties['webstore.tracing.sampleRate'] ?: 0}")
+	private double sampleRate;
+
+	@Value("#{systemProperties['webstore.tracing.spansPerThread'] ?: 256}")
+	private int spansPerThread;
+
+	@Value("#{systemProperties['webstore.tracing.retainedTraces'] ?: 100}")
+	private int retainedTraces;
+
+	@Value("#{systemProperties['webstore.tracing.exportFile'] ?: ''}")
+	private String exportFile;
+
+	private final ThreadLocal<SpanBuffer> buffers = new ThreadLocal<SpanBuffer>() {
+		@Override
+		protected SpanBuffer initialValue() {
+			return new SpanBuffer(spansPerThread);
+		}
+	};
+
+	private final Deque<List<TraceSpan>> recent = new ArrayDeque<List<TraceSpan>>();
+	private final BlockingQueue<List<TraceSpan>> exportQueue = new ArrayBlockingQueue<List<TraceSpan>>(EXPORT_QUEUE_SIZE);
+	private final ObjectMapper mapper = new ObjectMapper();
+	private Thread exporter;
+	private volatile boolean running;
+
+	private final LongAdder sampled = new LongAdder();
+	private final LongAdder exported = new LongAdder();
+	private final LongAdder exportDropped = new LongAdder();
+
+	@PostConstruct
+	public void start() {
+		if (!isEnabled()) {
+			return;
+		}
+		logger.info("Tracing " + (sampleRate * 100) + "% of requests" + (exportFile.isEmpty() ? "" : " to " + exportFile));
+		if (!exportFile.isEmpty()) {
+			running = true;
+			exporter = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					export();
+				}
+			}, "trace-exporter");
+			exporter.setDaemon(true);
+			exporter.start();
+		}
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		if (exporter != null) {
+			exporter.join(1000);
+		}
+	}
+
+	public boolean isEnabled() {
+		return sampleRate > 0;
+	}
+
+	/**
+	 * Takes the head sampling decision for the request starting on this
+	 * thread. A caller may force it with a B3 {@code sampled} flag and pass
+	 * its own trace and span id so the root span joins the caller's trace as
+	 * a child of the caller's span. Pass null headers for untrusted callers.
+	 */
+	public boolean startTrace(String name, String sampledHeader, String traceIdHeader, String spanIdHeader) {
+		if (!isEnabled()) {
+			return false;
+		}
+		SpanBuffer buffer = buffers.get();
+		boolean sample = sampledHeader != null ? "1".equals(sampledHeader) || "true".equals(sampledHeader)
+				: ThreadLocalRandom.current().nextDouble() < sampleRate;
+		if (!sample) {
+			if (buffer.isActive()) {
+				buffer.end();
+			}
+			return false;
+		}
+		long upstreamTraceId = parseId(traceIdHeader);
+		long parentSpanId = upstreamTraceId == 0 ? 0 : parseId(spanIdHeader);
+		buffer.begin(upstreamTraceId == 0 ? randomId() : upstreamTraceId, parentSpanId, randomId());
+		buffer.open(name);
+		sampled.increment();
+		return true;
+	}
+
+	/**
+	 * The buffer of the trace running on this thread, or null when the
+	 * current request is not sampled.
+	 */
+	SpanBuffer activeBuffer() {
+		SpanBuffer buffer = buffers.get();
+		return buffer.isActive() ? buffer : null;
+	}
+
+	public void finishTrace() {
+		SpanBuffer buffer = buffers.get();
+		if (!buffer.isActive()) {
+			return;
+		}
+		buffer.close(0);
+		List<TraceSpan> trace = toSpans(buffer);
+		buffer.end();
+		synchronized (recent) {
+			recent.addFirst(trace);
+			while (recent.size() > retainedTraces) {
+				recent.removeLast();
+			}
+		}
+		if (exporter != null && !exportQueue.offer(trace)) {
+			exportDropped.increment();
+		}
+	}
+
+	public List<List<TraceSpan>> getRecentTraces() {
+		synchronized (recent) {
+			return new ArrayList<List<TraceSpan>>(recent);
+		}
+	}
+
+	public Map<String, Object> getStatus() {
+		Map<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("sampleRate", sampleRate);
+		status.put("spansPerThread", spansPerThread);
+		status.put("sampledTraces", sampled.sum());
+		status.put("exportFile", exportFile.isEmpty() ? null : exportFile);
+		status.put("exportedTraces", exported.sum());
+		status.put("exportDropped", exportDropped.sum());
+		return status;
+	}
+
+	private List<TraceSpan> toSpans(SpanBuffer buffer) {
+		String traceId = hex(buffer.traceId);
+		long now = System.nanoTime();
+		List<TraceSpan> spans = new ArrayList<TraceSpan>(buffer.size);
+		for (int span = 0; span < buffer.size; span++) {
+			long end = buffer.ends[span] == 0 ? now : buffer.ends[span];
+			int parent = buffer.parents[span];
+			Map<String, String> tags = null;
+			if (span == 0 && buffer.dropped > 0) {
+				tags = Collections.singletonMap("droppedSpans", String.valueOf(buffer.dropped));
+			}
+			String parentId;
+			if (parent != SpanBuffer.NO_SPAN) {
+				parentId = hex(spanId(buffer.spanSeed, parent));
+			} else {
+				parentId = buffer.parentSpanId == 0 ? null : hex(buffer.parentSpanId);
+			}
+			spans.add(new TraceSpan(traceId, hex(spanId(buffer.spanSeed, span)), parentId, buffer.names[span],
+					buffer.epochMicros(buffer.starts[span]), Math.max(1, (end - buffer.starts[span]) / 1000), tags));
+		}
+		return spans;
+	}
+
+	private void export() {
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(exportFile, true), StandardCharsets.UTF_8));
+			while (running || !exportQueue.isEmpty()) {
+				List<TraceSpan> trace = exportQueue.poll(100, TimeUnit.MILLISECONDS);
+				if (trace == null) {
+					writer.flush();
+					continue;
+				}
+				writer.write(mapper.writeValueAsString(trace));
+				writer.write('\n');
+				exported.increment();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			logger.error("Trace export to " + exportFile + " stopped", e);
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					logger.warn("Could not close trace export file " + exportFile, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A B3 trace or span id, keeping the low 64 bits of a 128 bit trace id,
+	 * or 0 when the header is missing or malformed.
+	 */
+	private static long parseId(String header) {
+		if (header != null && !header.isEmpty()) {
+			try {
+				String low = header.length() > 16 ? header.substring(header.length() - 16) : header;
+				return Long.parseUnsignedLong(low, 16);
+			} catch (NumberFormatException e) {
+				// not a B3 id, ignore it
+			}
+		}
+		return 0;
+	}
+
+	private static long randomId() {
+		long id;
+		do {
+			id = ThreadLocalRandom.current().nextLong();
+		} while (id == 0);
+		return id;
+	}
+
+	/**
+	 * Span ids are derived from a random seed per trace, so two nodes
+	 * joining the same upstream trace never hand out the same ids.
+	 */
+	private static long spanId(long spanSeed, int span) {
+		long id = (spanSeed + span) * 0x9E3779B97F4A7C15L;
+		id ^= id >>> 31;
+		return id == 0 ? 1 : id;
+	}
+
+	private static String hex(long id) {
+		String hex = Long.toHexString(id);
+		return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+	}
+}
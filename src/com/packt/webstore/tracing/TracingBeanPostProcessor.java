@@ -0,0 +1,84 @@
+package com.packt.webstore.tracing;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+import org.springframework.stereotype.Service;
+
+/**
+ * Wraps every {@code @Service} and {@code @Repository} bean in a class
+ * proxy that records a span per call when the current request is sampled.
+ * Beans are left alone entirely while tracing is off.
+ */
+@Component
+public class TracingBeanPostProcessor implements BeanPostProcessor {
+
+	@Autowired
+	private Tracer tracer;
+
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+		return bean;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (!tracer.isEnabled()) {
+			return bean;
+		}
+		Class<?> type = AopUtils.getTargetClass(bean);
+		if (AnnotationUtils.findAnnotation(type, Service.class) == null
+				&& AnnotationUtils.findAnnotation(type, Repository.class) == null) {
+			return bean;
+		}
+		ProxyFactory factory = new ProxyFactory(bean);
+		factory.setProxyTargetClass(true);
+		factory.addAdvice(new SpanInterceptor(tracer, type.getSimpleName()));
+		return factory.getProxy(type.getClassLoader());
+	}
+
+	private static class SpanInterceptor implements MethodInterceptor {
+		private final Tracer tracer;
+		private final String beanName;
+		private final ConcurrentMap<Method, String> spanNames = new ConcurrentHashMap<Method, String>();
+
+		SpanInterceptor(Tracer tracer, String beanName) {
+			this.tracer = tracer;
+			this.beanName = beanName;
+		}
+
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			SpanBuffer buffer = tracer.activeBuffer();
+			if (buffer == null) {
+				return invocation.proceed();
+			}
+			int span = buffer.open(spanName(invocation.getMethod()));
+			try {
+				return invocation.proceed();
+			} finally {
+				buffer.close(span);
+			}
+		}
+
+		private String spanName(Method method) {
+			String name = spanNames.get(method);
+			if (name == null) {
+				name = beanName + "." + method.getName();
+				spanNames.putIfAbsent(method, name);
+			}
+			return name;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.packt.webstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import javax.servlet.Filter;
+
+import org.junit.Test;
+import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.support.XmlWebApplicationContext;
+
+/**
+ * Runs requests through the springSecurityFilterChain of
+ * security-context.xml, with and without the security-fastpath profile,
+ * and prints the filter time per request of each route. Checks that both
+ * modes still guard the admin pages and the replication feed, and that
+ * the fast path never opens a session for an anonymous request, rejected
+ * or not.
+ */
+public class SecurityFastPathTest {
+
+	private static final String CONTEXT_PATH = "/Spring01";
+	private static final int REQUESTS = 5000;
+	private static final int ROUNDS = 3;
+
+	private static final String[][] OPEN = {
+			{ "GET", "/resource/css/styles.css", null },
+			{ "GET", "/products", null },
+			{ "GET", "/products/product", "id=P1234" },
+			{ "GET", "/products/filter/ByCriteria", null },
+			{ "GET", "/products/Laptop", null },
+			{ "PUT", "/rest/cart/add/P1234", null } };
+
+	private static final String[][] ADMIN = {
+			{ "GET", "/products/add", null },
+			{ "GET", "/products/ADD", null },
+			{ "GET", "/products/add.json", null },
+			{ "GET", "/products/add/", null },
+			{ "GET", "/products/admin/cart-nodes", null },
+			{ "GET", "/products/admin/analytics/sales", null },
+			{ "GET", "/products/admin/analytics/sales/product", "id=P1234" },
+			{ "GET", "/products/admin/accounting/usage", null },
+			{ "GET", "/products/admin/accounting/samples", null },
+			{ "GET", "/products/admin/tracing/traces", null },
+			{ "GET", "/products/admin/metrics/admission", null },
+			{ "GET", "/products/admin/metrics/push", null },
+			{ "GET", "/products/admin/metrics/cache/responses", null },
+			{ "GET", "/products/admin/metrics/recommendations", null } };
+
+	private static final String[][] REPLICATION = {
+			{ "GET", "/replication/snapshot", null },
+			{ "GET", "/replication/log", "since=0" },
+			{ "GET", "/replication/status", null } };
+
+	@Test
+	public void defaultChain() throws Exception {
+		run(null);
+	}
+
+	@Test
+	public void fastPath() throws Exception {
+		run("security-fastpath");
+	}
+
+	private void run(String profile) throws Exception {
+		MockServletContext servletContext = new MockServletContext("file:" + new File("WebContent").getAbsolutePath(),
+				new FileSystemResourceLoader());
+		XmlWebApplicationContext context = new XmlWebApplicationContext();
+		context.setServletContext(servletContext);
+		if (profile != null) {
+			context.getEnvironment().setActiveProfiles(profile);
+		}
+		context.setConfigLocation("/WEB-INF/spring/webContext/security-context.xml");
+		context.refresh();
+		try {
+			Filter chain = context.getBean("springSecurityFilterChain", Filter.class);
+			System.out.println("security chain, profile " + (profile == null ? "(default)" : profile));
+			for (String[] route : OPEN) {
+				MockHttpServletRequest request = request(servletContext, route);
+				MockFilterChain next = new MockFilterChain();
+				chain.doFilter(request, new MockHttpServletResponse(), next);
+				assertNotNull(route[1] + " should reach the application", next.getRequest());
+				if (profile != null) {
+					assertNull(route[1] + " opened a session", request.getSession(false));
+				}
+				time(chain, servletContext, route);
+			}
+			for (String[] route : ADMIN) {
+				MockHttpServletRequest request = request(servletContext, route);
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				MockFilterChain next = new MockFilterChain();
+				chain.doFilter(request, response, next);
+				assertNull(route[1] + " reached the application anonymously", next.getRequest());
+				assertEquals(route[1], 302, response.getStatus());
+				assertTrue(route[1], response.getRedirectedUrl().endsWith("/login"));
+				if (profile != null) {
+					assertNull(route[1] + " opened a session", request.getSession(false));
+				}
+				time(chain, servletContext, route);
+			}
+			for (String[] route : REPLICATION) {
+				MockHttpServletRequest request = request(servletContext, route);
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				MockFilterChain next = new MockFilterChain();
+				chain.doFilter(request, response, next);
+				assertNull(route[1] + " reached the application anonymously", next.getRequest());
+				assertEquals(route[1], 401, response.getStatus());
+				assertNull(route[1] + " opened a session", request.getSession(false));
+			}
+		} finally {
+			context.close();
+		}
+	}
+
+	/**
+	 * Prints the best mean filter time per request over a few rounds, less
+	 * the cost of building the mock request and response.
+	 */
+	private static void time(Filter chain, MockServletContext servletContext, String[] route) throws Exception {
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < REQUESTS; i++) {
+				chain.doFilter(request(servletContext, route), new MockHttpServletResponse(), new MockFilterChain());
+			}
+			best = Math.min(best, (System.nanoTime() - start) / REQUESTS);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < REQUESTS; i++) {
+			new MockFilterChain().doFilter(request(servletContext, route), new MockHttpServletResponse());
+		}
+		long mocks = (System.nanoTime() - start) / REQUESTS;
+		System.out.println(String.format("  %-4s %-34s %8d ns", route[0],
+				route[1] + (route[2] == null ? "" : "?" + route[2]), Math.max(0, best - mocks)));
+	}
+
+	private static MockHttpServletRequest request(MockServletContext servletContext, String[] route) {
+		MockHttpServletRequest request = new MockHttpServletRequest(servletContext, route[0], CONTEXT_PATH + route[1]);
+		request.setContextPath(CONTEXT_PATH);
+		request.setServletPath(route[1]);
+		request.setQueryString(route[2]);
+		return request;
+	}
+}
@@ -0,0 +1,97 @@
+package com.packt.webstore.bench;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.packt.webstore.domain.Cart;
+import com.packt.webstore.domain.CartItem;
+import com.packt.webstore.domain.CompactCart;
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.repository.impl.OutMemoryProductRepository;
+
+/**
+ * Payload size and serialization time of a cart in each wire format the
+ * cart endpoints offer: the full {@link Cart} as JSON, pretty printed as
+ * the JSON view does and compact as {@code @ResponseBody} does, and the
+ * {@link CompactCart} as JSON and as Smile.
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) com.packt.webstore.bench.CartPayloadBenchmark [lines...]
+ * </pre>
+ */
+public class CartPayloadBenchmark {
+
+	private static final int WARMUP_MILLIS = 2000;
+	private static final int MEASURE_MILLIS = 3000;
+
+	/** Keeps the serialized sizes alive so the loop cannot be optimized away. */
+	static volatile long blackhole;
+
+	public static void main(String[] args) throws IOException {
+		int[] lines = args.length == 0 ? new int[] { 1, 10, 50 } : new int[args.length];
+		for (int i = 0; i < args.length; i++) {
+			lines[i] = Integer.parseInt(args[i]);
+		}
+		ObjectMapper json = new ObjectMapper();
+		ObjectMapper smile = new ObjectMapper(new SmileFactory());
+		ObjectWriter[] writers = { json.writerWithDefaultPrettyPrinter(), json.writer(), json.writer(), smile.writer() };
+		String[] names = { "full JSON, pretty", "full JSON", "compact JSON", "compact Smile" };
+
+		System.out.println(String.format("%-6s %-18s %10s %12s", "lines", "format", "bytes", "ns/op"));
+		for (int count : lines) {
+			Cart cart = cart(count);
+			CompactCart compact = new CompactCart(cart);
+			for (int i = 0; i < writers.length; i++) {
+				Object value = i < 2 ? cart : compact;
+				int bytes = writers[i].writeValueAsBytes(value).length;
+				run(writers[i], value, WARMUP_MILLIS);
+				System.out.println(String.format("%-6d %-18s %10d %12.0f", count, names[i], bytes,
+						run(writers[i], value, MEASURE_MILLIS)));
+			}
+		}
+	}
+
+	/**
+	 * Serializes the value for the given time and returns the mean
+	 * nanoseconds per serialization.
+	 */
+	static double run(ObjectWriter writer, Object value, long millis) throws IOException {
+		long sink = 0;
+		long operations = 0;
+		long start = System.nanoTime();
+		long end = start + millis * 1000000L;
+		long now;
+		do {
+			for (int i = 0; i < 100; i++) {
+				sink += writer.writeValueAsBytes(value).length;
+			}
+			operations += 100;
+			now = System.nanoTime();
+		} while (now < end);
+		blackhole += sink;
+		return (double) (now - start) / operations;
+	}
+
+	/**
+	 * A cart of the demo products, copied under new ids to reach the
+	 * requested number of lines.
+	 */
+	static Cart cart(int lines) {
+		List<Product> demo = new OutMemoryProductRepository().getAllProducts();
+		Cart cart = new Cart("benchmark");
+		for (int i = 0; i < lines; i++) {
+			Product product = new Product(demo.get(i % demo.size()));
+			product.setProductId("P" + (10000 + i));
+			product.setUnitPrice(product.getUnitPrice().add(new BigDecimal(i)));
+			CartItem item = new CartItem(product);
+			item.setQuantity(1 + i % 3);
+			cart.addCartItem(item);
+		}
+		return cart;
+	}
+}
@@ -0,0 +1,109 @@
+package com.packt.webstore.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.packt.webstore.domain.PromoRedemption;
+import com.packt.webstore.service.PromoCodeService;
+import com.packt.webstore.service.impl.PromoCodeServiceImpl;
+
+/**
+ * Loads a million single-use promo codes (or the given number) into the
+ * promo code service and reports the load time, the heap taken per code,
+ * and the redemption throughput of the given number of threads, once for
+ * codes that exist and once for codes that do not. Every thread tries
+ * every code, so the check that each code was redeemed exactly once also
+ * covers the single-use limit under contention.
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -Xmx1g -cp target/test-classes:target/classes:$(cat target/classpath.txt) com.packt.webstore.bench.PromoCodeBenchmark [codes] [threads]
+ * </pre>
+ */
+public class PromoCodeBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		final int codes = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+		long heapBefore = usedHeap();
+		long start = System.nanoTime();
+		final PromoCodeServiceImpl service = new PromoCodeServiceImpl();
+		service.init();
+		int campaignId = service.addCampaign("benchmark", Long.MIN_VALUE, Long.MAX_VALUE);
+		for (int i = 0; i < codes; i++) {
+			service.addCode(code(i), campaignId, 1);
+		}
+		long loadNanos = System.nanoTime() - start;
+		long heapAfter = usedHeap();
+
+		System.out.println(String.format("%-24s %,14d", "codes", service.size()));
+		System.out.println(String.format("%-24s %,14d ms", "load", loadNanos / 1000000));
+		System.out.println(String.format("%-24s %,14d bytes", "heap per code", (heapAfter - heapBefore) / codes));
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			long[] redeemed = run(pool, threads, service, codes, true);
+			report("redeem, existing codes", redeemed, threads, codes);
+			if (redeemed[0] != codes) {
+				throw new IllegalStateException(redeemed[0] + " redemptions for " + codes + " single-use codes");
+			}
+			report("redeem, unknown codes", run(pool, threads, service, codes, false), threads, codes);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Every thread tries every code, each starting at a different offset.
+	 * Returns the number of successful redemptions and the elapsed nanos.
+	 */
+	private static long[] run(ExecutorService pool, final int threads, final PromoCodeService service,
+			final int codes, final boolean existing) throws Exception {
+		List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+		for (int t = 0; t < threads; t++) {
+			final int offset = (int) ((long) codes * t / threads);
+			tasks.add(new Callable<Long>() {
+				@Override
+				public Long call() {
+					long redeemed = 0;
+					for (int i = 0; i < codes; i++) {
+						int n = (offset + i) % codes;
+						if (service.redeem(existing ? code(n) : "MISS" + n) == PromoRedemption.REDEEMED) {
+							redeemed++;
+						}
+					}
+					return redeemed;
+				}
+			});
+		}
+		long start = System.nanoTime();
+		long redeemed = 0;
+		for (Future<Long> result : pool.invokeAll(tasks)) {
+			redeemed += result.get();
+		}
+		return new long[] { redeemed, System.nanoTime() - start };
+	}
+
+	private static void report(String name, long[] result, int threads, int codes) {
+		double seconds = result[1] / 1e9;
+		System.out.println(String.format("%-24s %,14.0f ops/s with %d threads, %,d redeemed", name,
+				(double) threads * codes / seconds, threads, result[0]));
+	}
+
+	private static String code(int i) {
+		return "PROMO" + i;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
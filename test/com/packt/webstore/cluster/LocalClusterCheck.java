@@ -0,0 +1,205 @@
+package com.packt.webstore.cluster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.packt.webstore.domain.Cart;
+import com.packt.webstore.domain.CartItem;
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.repository.impl.OutMemoryProductRepository;
+import com.packt.webstore.domain.repository.impl.ShardedCartRepositoryImpl;
+
+/**
+ * Runs a cart ring of several nodes on localhost, each with its own RPC
+ * port, and checks that every cart can be read from every node, that a
+ * join moves carts only to the joining node, that a leave hands the
+ * leaving node's carts back, that changes made in place to carts
+ * while they are moving away are kept, and that each node's product index
+ * lists the carts it holds and no others. Exits with status 1 if any check
+ * fails.
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) com.packt.webstore.cluster.LocalClusterCheck [basePort] [carts]
+ * </pre>
+ */
+public class LocalClusterCheck {
+
+	private static final int VIRTUAL_NODES = 128;
+	private static final String CLUSTER_SECRET = "local-cluster-check";
+
+	private final List<ShardedCartRepositoryImpl> instances = new ArrayList<ShardedCartRepositoryImpl>();
+	private final Map<String, Integer> expectedUnits = new HashMap<String, Integer>();
+	private final Product product = new OutMemoryProductRepository().getAllProducts().get(0);
+	private int failures;
+
+	public static void main(String[] args) throws Exception {
+		int basePort = args.length > 0 ? Integer.parseInt(args[0]) : 17001;
+		int carts = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		LocalClusterCheck check = new LocalClusterCheck();
+		try {
+			check.run(basePort, carts);
+		} finally {
+			check.shutdown();
+		}
+		System.out.println(check.failures == 0 ? "All checks passed" : check.failures + " checks failed");
+		System.exit(check.failures == 0 ? 0 : 1);
+	}
+
+	private void run(int basePort, int carts) throws Exception {
+		String a = "localhost:" + basePort;
+		String b = "localhost:" + (basePort + 1);
+		String c = "localhost:" + (basePort + 2);
+		String d = "localhost:" + (basePort + 3);
+		String ring = a + "," + b + "," + c;
+		start(a, ring);
+		start(b, ring);
+		start(c, ring);
+
+		for (int i = 0; i < carts; i++) {
+			Cart cart = new Cart("cart-" + i);
+			cart.addCartItem(new CartItem(product));
+			instances.get(i % instances.size()).create(cart);
+			expectedUnits.put(cart.getCartId(), 1);
+		}
+		verify("3 nodes");
+		Map<String, String> owners = owners();
+
+		start(d, ring + "," + d);
+		final ShardedCartRepositoryImpl writer = instances.get(0);
+		final List<String> writerCarts = new ArrayList<String>();
+		for (String cartId : expectedUnits.keySet()) {
+			if (writer.holds(cartId)) {
+				writerCarts.add(cartId);
+			}
+		}
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final Map<String, Integer> written = new HashMap<String, Integer>();
+		Thread changes = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; writing.get(); i++) {
+					String cartId = writerCarts.get(i % writerCarts.size());
+					Cart cart = writer.read(cartId);
+					cart.addCartItem(new CartItem(product));
+					writer.update(cartId, cart);
+					Integer units = written.get(cartId);
+					written.put(cartId, units == null ? 1 : units + 1);
+				}
+			}
+		}, "cart-writer");
+		changes.start();
+		int moved = 0;
+		for (int i = 0; i < 3; i++) {
+			moved += instances.get(i).addNode(d);
+		}
+		writing.set(false);
+		changes.join();
+		for (Map.Entry<String, Integer> entry : written.entrySet()) {
+			expectedUnits.put(entry.getKey(), expectedUnits.get(entry.getKey()) + entry.getValue());
+		}
+		System.out.println(String.format("join of %s moved %d carts while %d changes were made", d, moved,
+				sum(written)));
+		verify("4 nodes");
+		Map<String, String> joined = owners();
+		int stayed = 0;
+		for (Map.Entry<String, String> entry : joined.entrySet()) {
+			String before = owners.get(entry.getKey());
+			if (entry.getValue().equals(before)) {
+				stayed++;
+			} else if (!entry.getValue().equals(d)) {
+				fail(entry.getKey() + " moved from " + before + " to " + entry.getValue() + " instead of " + d);
+			}
+		}
+		check(stayed + moved == carts, "every moved cart is counted once, " + stayed + " stayed and " + moved + " moved");
+
+		ShardedCartRepositoryImpl leaving = instances.remove(3);
+		int handedBack = leaving.removeNode(d);
+		for (ShardedCartRepositoryImpl instance : instances) {
+			instance.removeNode(d);
+		}
+		leaving.shutdown();
+		System.out.println(String.format("leave of %s handed back %d carts", d, handedBack));
+		check(handedBack == moved, "the leaving node hands back the " + moved + " carts it received");
+		verify("3 nodes after the leave");
+	}
+
+	private void start(String node, String ring) throws IOException {
+		ShardedCartRepositoryImpl instance = new ShardedCartRepositoryImpl(node, ring, VIRTUAL_NODES, CLUSTER_SECRET);
+		instance.init();
+		instances.add(instance);
+	}
+
+	private void shutdown() {
+		for (ShardedCartRepositoryImpl instance : instances) {
+			instance.shutdown();
+		}
+	}
+
+	/**
+	 * Reads every cart through every node.
+	 */
+	private void verify(String stage) {
+		int localCarts = 0;
+		int indexed = 0;
+		for (ShardedCartRepositoryImpl instance : instances) {
+			localCarts += instance.getLocalCartCount();
+			List<String> holding = instance.localCartsWith(product.getProductId());
+			indexed += holding.size();
+			for (String cartId : holding) {
+				check(instance.holds(cartId), stage + ": " + instance.getLocalNode() + " indexes " + cartId
+						+ " which it does not hold");
+			}
+			for (Map.Entry<String, Integer> expected : expectedUnits.entrySet()) {
+				Cart cart = instance.read(expected.getKey());
+				if (cart == null) {
+					fail(stage + ": " + expected.getKey() + " not found through " + instance.getLocalNode());
+				} else if (cart.getCartItems().get(product.getProductId()).getQuantity() != expected.getValue()) {
+					fail(stage + ": " + expected.getKey() + " has " + cart.getCartItems().get(product.getProductId()).getQuantity()
+							+ " units through " + instance.getLocalNode() + ", expected " + expected.getValue());
+				}
+			}
+		}
+		check(localCarts == expectedUnits.size(), stage + ": each cart is held by exactly one node, "
+				+ localCarts + " held for " + expectedUnits.size() + " carts");
+		check(indexed == expectedUnits.size(), stage + ": each cart is indexed by the node holding it, "
+				+ indexed + " indexed for " + expectedUnits.size() + " carts");
+		System.out.println(String.format("%s: %d carts read through each of %d nodes", stage, expectedUnits.size(),
+				instances.size()));
+	}
+
+	private Map<String, String> owners() {
+		Map<String, String> owners = new HashMap<String, String>();
+		for (ShardedCartRepositoryImpl instance : instances) {
+			for (String cartId : expectedUnits.keySet()) {
+				if (instance.holds(cartId)) {
+					owners.put(cartId, instance.getLocalNode());
+				}
+			}
+		}
+		return owners;
+	}
+
+	private void check(boolean condition, String description) {
+		if (!condition) {
+			fail(description);
+		}
+	}
+
+	private void fail(String message) {
+		failures++;
+		System.out.println("FAILED " + message);
+	}
+
+	private static int sum(Map<String, Integer> counts) {
+		int sum = 0;
+		for (int count : counts.values()) {
+			sum += count;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,143 @@
+package com.packt.webstore.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.packt.webstore.analytics.CoPurchaseRecommender;
+import com.packt.webstore.domain.Cart;
+import com.packt.webstore.domain.CartItem;
+import com.packt.webstore.domain.Product;
+import com.packt.webstore.domain.repository.ProductRepository;
+import com.packt.webstore.domain.repository.impl.OutMemoryProductRepository;
+import com.packt.webstore.domain.repository.impl.ShardedCartRepositoryImpl;
+import com.packt.webstore.event.OrderEventPipeline;
+import com.packt.webstore.push.PushHub;
+import com.packt.webstore.service.CartService;
+import com.packt.webstore.service.OrderService;
+
+/**
+ * Drives the cart and order services from several threads with a random
+ * mix of adds, removes and orders over a few shared carts, then checks
+ * that no unit of stock was lost or oversold and that every cart total
+ * still matches its lines.
+ */
+public class CheckoutStressTest {
+
+	private static final int THREADS = 8;
+	private static final int OPERATIONS_PER_THREAD = 20000;
+	private static final int CARTS = 10;
+
+	private AnnotationConfigApplicationContext context;
+	private CartService cartService;
+	private OrderService orderService;
+	private ProductRepository productRepository;
+
+	@Before
+	public void setUp() {
+		context = new AnnotationConfigApplicationContext(OutMemoryProductRepository.class,
+				ShardedCartRepositoryImpl.class, PushHub.class, CoPurchaseRecommender.class, CartServiceImpl.class,
+				OrderEventPipeline.class, OrderServiceImpl.class);
+		cartService = context.getBean(CartService.class);
+		orderService = context.getBean(OrderService.class);
+		productRepository = context.getBean(OutMemoryProductRepository.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void concurrentCartAndOrderTrafficKeepsStockAndTotalsConsistent() throws Exception {
+		final List<Product> products = productRepository.getAllProducts();
+		Map<String, Long> initialStock = new HashMap<String, Long>();
+		for (Product product : products) {
+			initialStock.put(product.getProductId(), product.getUnitsInStock());
+		}
+		for (int i = 0; i < CARTS; i++) {
+			cartService.create(new Cart("stress-" + i));
+		}
+		final ConcurrentMap<String, AtomicLong> sold = new ConcurrentHashMap<String, AtomicLong>();
+		for (Product product : products) {
+			sold.put(product.getProductId(), new AtomicLong());
+		}
+
+		List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < THREADS; t++) {
+			workers.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+						String cartId = "stress-" + random.nextInt(CARTS);
+						Product product = productRepository.getProductById(products.get(random.nextInt(products.size())).getProductId());
+						int operation = random.nextInt(10);
+						if (operation < 5) {
+							cartService.addItem(cartId, cartService.read(cartId), product);
+						} else if (operation < 8) {
+							Cart cart = cartService.read(cartId);
+							cart.removeCartItem(new CartItem(product));
+							cartService.update(cartId, cart);
+						} else {
+							int quantity = 1 + random.nextInt(3);
+							try {
+								orderService.processOrder(product.getProductId(), quantity);
+								sold.get(product.getProductId()).addAndGet(quantity);
+							} catch (IllegalArgumentException e) {
+								// out of stock
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		long start = System.nanoTime();
+		try {
+			for (Future<Void> result : pool.invokeAll(workers)) {
+				result.get();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%d threads, %,d operations, %,.0f ops/s", THREADS,
+				THREADS * OPERATIONS_PER_THREAD, THREADS * OPERATIONS_PER_THREAD * 1e9 / elapsed));
+
+		for (Product product : productRepository.getAllProducts()) {
+			String productId = product.getProductId();
+			assertTrue(productId + " stock went negative", product.getUnitsInStock() >= 0);
+			assertEquals(productId + " stock plus units sold", (long) initialStock.get(productId),
+					product.getUnitsInStock() + sold.get(productId).get());
+		}
+		for (int i = 0; i < CARTS; i++) {
+			Cart cart = cartService.read("stress-" + i);
+			BigDecimal lines = BigDecimal.ZERO;
+			for (CartItem item : cart.getCartItems().values()) {
+				assertTrue(item.getQuantity() > 0);
+				lines = lines.add(item.getProduct().getUnitPrice().multiply(new BigDecimal(item.getQuantity())));
+			}
+			assertEquals(cart.getCartId() + " grand total", 0, lines.compareTo(cart.getGrandTotal()));
+		}
+	}
+}